@@ -2,11 +2,13 @@ package com.snaplink.urlshortener;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * Main entry point for the Spring Boot application.
  */
 @SpringBootApplication(scanBasePackages = "com.snaplink.urlshortener")
+@EnableScheduling
 public class App {
     public static void main(String[] args) {
         SpringApplication.run(App.class, args);
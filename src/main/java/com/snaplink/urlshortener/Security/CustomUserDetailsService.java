@@ -1,6 +1,6 @@
 package com.snaplink.urlshortener.Security;
 
-import com.snaplink.urlshortener.repository.BigtableRepository;
+import com.snaplink.urlshortener.repository.UserStore;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -8,9 +8,9 @@ import org.springframework.stereotype.Service;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
-    private final BigtableRepository repository;
+    private final UserStore repository;
 
-    public CustomUserDetailsService(BigtableRepository repository) {
+    public CustomUserDetailsService(UserStore repository) {
         this.repository = repository;
     }
 
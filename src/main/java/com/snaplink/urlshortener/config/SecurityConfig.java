@@ -41,11 +41,17 @@ private final CustomUserDetailsService userDetailsService;
         .csrf(csrf -> csrf.disable())
             .authorizeHttpRequests(auth -> auth
                 .requestMatchers(new AntPathRequestMatcher("/shorten")).permitAll()
+                .requestMatchers(new AntPathRequestMatcher("/shorten/batch")).permitAll()
                 .requestMatchers(new AntPathRequestMatcher("/*")).permitAll()
                     .requestMatchers(new AntPathRequestMatcher("/update-shortcode")).permitAll()
                     .requestMatchers(new AntPathRequestMatcher("/search")).permitAll()
+                    .requestMatchers(new AntPathRequestMatcher("/search/page")).permitAll()
+                    .requestMatchers(new AntPathRequestMatcher("/search/links")).permitAll()
                 .requestMatchers(new AntPathRequestMatcher("/api/auth/**")).permitAll()
                     .requestMatchers(new AntPathRequestMatcher("/analytics/details")).permitAll()
+                    .requestMatchers(new AntPathRequestMatcher("/analytics/timeseries")).permitAll()
+                    .requestMatchers(new AntPathRequestMatcher("/analytics/details/page")).permitAll()
+                    .requestMatchers(new AntPathRequestMatcher("/analytics/details/stream")).permitAll()
                     .anyRequest().authenticated()
             )
             .headers(headers -> headers
@@ -1,7 +1,8 @@
 package com.snaplink.urlshortener.controller;
 
 import com.snaplink.urlshortener.model.*;
-import com.snaplink.urlshortener.repository.BigtableRepository;
+import com.snaplink.urlshortener.repository.UserStore;
+import com.snaplink.urlshortener.service.AccountDeletionService;
 import com.snaplink.urlshortener.service.EmailService;
 import com.snaplink.urlshortener.service.ResetPasswordRequest;
 
@@ -32,23 +33,26 @@ import org.slf4j.LoggerFactory;
 public class AuthController {
     private static final Logger logger = LoggerFactory.getLogger(AuthController.class);
 
-    private final BigtableRepository repository;
+    private final UserStore repository;
     private final PasswordEncoder encoder;
     private final AuthenticationManager authManager;
     private final EmailService emailService;
+    private final AccountDeletionService accountDeletionService;
 
     @Value("${app.security.reset-token-expiration-hours}")
     private long expHours;
 
     @Autowired
     public AuthController(AuthenticationManager authManager,
-                          BigtableRepository repository,
+                          UserStore repository,
                           PasswordEncoder encoder,
-                          EmailService emailService) {
+                          EmailService emailService,
+                          AccountDeletionService accountDeletionService) {
         this.authManager  = authManager;
         this.repository   = repository;
         this.encoder      = encoder;
         this.emailService = emailService;
+        this.accountDeletionService = accountDeletionService;
     }
 
     /**
@@ -87,8 +91,11 @@ public class AuthController {
             LocalDateTime.now()
         );
 
-        // Save to Bigtable
-        repository.createUser(user);
+        // Save to Bigtable (fails if a concurrent signup claimed the username or email)
+        if (!repository.createUser(user)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("message", "Username or email already registered"));
+        }
 
         // Send welcome email
         try {
@@ -233,30 +240,38 @@ public class AuthController {
         user.setResetToken(null);
         user.setResetTokenExpiry(null);
         repository.updateUser(user);
+        repository.deleteResetToken(req.getToken());
 
         return ResponseEntity.ok(Map.of("message", "Password has been reset"));
     }
 
     /**
-     * Deletes a user account and associated data.
+     * Starts deleting a user account together with its links and their click history.
+     * Deletion runs in the background; poll {@code /delete-user/status} for progress.
      * 
-     * @param email ID of the user to delete
-     * @return ResponseEntity with success message
+     * @param email Email of the user to delete
+     * @return ResponseEntity with 202 and the job status, or 404 if the user does not exist
      */
     @DeleteMapping("/delete-user")
     public ResponseEntity<?> deleteUser(@RequestParam String email) {
-        if (!repository.existsByEmail(email)) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND)
-                    .body(Map.of("error", "User not found"));
-        }
+        return accountDeletionService.startDeletion(email)
+                .<ResponseEntity<?>>map(status -> ResponseEntity.accepted().body(status))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "User not found")));
+    }
 
-        try {
-            repository.deleteUserByRowKey(email);
-            return ResponseEntity.ok(Map.of("message", "User deleted successfully"));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", "Failed to delete user"));
-        }
+    /**
+     * Reports the progress of an account deletion started on this instance.
+     * 
+     * @param email Email of the user being deleted
+     * @return ResponseEntity with the job status, or 404 if no deletion is known
+     */
+    @GetMapping("/delete-user/status")
+    public ResponseEntity<?> deleteUserStatus(@RequestParam String email) {
+        return accountDeletionService.getStatus(email)
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "No deletion in progress")));
     }
 
     // Helper methods for response formatting
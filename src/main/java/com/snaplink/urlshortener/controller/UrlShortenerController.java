@@ -1,17 +1,41 @@
 package com.snaplink.urlshortener.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.snaplink.urlshortener.model.BatchLinkResult;
+import com.snaplink.urlshortener.model.ClickTimeSeries;
+import com.snaplink.urlshortener.model.CursorPage;
+import com.snaplink.urlshortener.model.RollupGranularity;
 import com.snaplink.urlshortener.model.ShortUrl;
 import com.snaplink.urlshortener.model.ShortUrlDto;
+import com.snaplink.urlshortener.service.BatchLinkService;
+import com.snaplink.urlshortener.service.ClickAnalyticsService;
+import com.snaplink.urlshortener.service.CoarseClock;
+import com.snaplink.urlshortener.service.HotLink;
+import com.snaplink.urlshortener.service.HotLinkTable;
+import com.snaplink.urlshortener.service.LinkSearchService;
 import com.snaplink.urlshortener.service.UrlShortenerService;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Controller for handling URL shortening and redirection operations.
@@ -23,10 +47,31 @@ import java.util.Map;
 public class UrlShortenerController {
 
     private final UrlShortenerService urlShortenerService;
+    private final BatchLinkService batchLinkService;
+    private final ClickAnalyticsService clickAnalyticsService;
+    private final LinkSearchService linkSearchService;
+    private final HotLinkTable hotLinkTable;
+    private final CoarseClock clock;
+    private final ObjectWriter ndjsonWriter;
+    private final ObjectReader linkSpecReader;
 
     @Autowired
-    public UrlShortenerController(UrlShortenerService urlShortenerService) {
+    public UrlShortenerController(UrlShortenerService urlShortenerService,
+                                  BatchLinkService batchLinkService,
+                                  ClickAnalyticsService clickAnalyticsService,
+                                  LinkSearchService linkSearchService,
+                                  HotLinkTable hotLinkTable,
+                                  CoarseClock clock,
+                                  ObjectMapper objectMapper) {
         this.urlShortenerService = urlShortenerService;
+        this.batchLinkService = batchLinkService;
+        this.clickAnalyticsService = clickAnalyticsService;
+        this.linkSearchService = linkSearchService;
+        this.hotLinkTable = hotLinkTable;
+        this.clock = clock;
+        // Records are written one after another to the same response stream
+        this.ndjsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.linkSpecReader = objectMapper.readerFor(ShortUrl.class);
     }
 
     /**
@@ -74,45 +119,108 @@ public class UrlShortenerController {
         }
     }
 
+    /**
+     * Creates many short URLs in one request. The body is either a JSON array of link specs
+     * or newline-delimited JSON with one spec per line; each spec has the fields of
+     * {@code POST /shorten}. Specs are parsed and written in chunks while the body is still
+     * arriving, and one result per link is streamed back as newline-delimited JSON, so
+     * memory use does not grow with the batch size.
+     * 
+     * @param request The request whose body holds the link specs
+     * @param response Receives one BatchLinkResult per line, in request order
+     */
+    @PostMapping(value = "/shorten/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public void shortenBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/x-ndjson");
+        OutputStream buffered = new BufferedOutputStream(response.getOutputStream(), 64 * 1024);
+        // A top-level array is unwrapped, so both body formats read as a sequence of specs
+        try (MappingIterator<ShortUrl> specs = linkSpecReader.readValues(request.getInputStream())) {
+            batchLinkService.createAll(specs, result -> writeBatchResult(buffered, result));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        buffered.flush();
+    }
+
+    private void writeBatchResult(OutputStream out, BatchLinkResult result) {
+        try {
+            ndjsonWriter.writeValue(out, result);
+            out.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     /**
      * Redirects a short URL to its original long URL.
      * Records click statistics and handles URL expiration.
+     * <p>
+     * Storage is read and one-time links are consumed asynchronously, so no servlet thread
+     * waits on Bigtable. Requests answered from the hot link table or the heap cache complete
+     * on the calling thread and skip the async dispatch. Continuations of storage reads run on
+     * the client's callback threads, so they never wait: clicks recorded there are dropped
+     * rather than blocked on a full click queue.
      * 
      * @param shortCode The short code to redirect
      * @param request HTTP request for recording click data
-     * @return ResponseEntity with redirect or error message
+     * @return ResponseEntity with redirect or error message, or a CompletableFuture of one
      */
     @GetMapping("/{shortCode}")
-    public ResponseEntity<?> redirectToLongUrl(@PathVariable String shortCode, HttpServletRequest request) {
-        ShortUrl url = urlShortenerService.getShortUrl(shortCode);
+    public Object redirectToLongUrl(@PathVariable String shortCode, HttpServletRequest request) {
+        CompletableFuture<ResponseEntity<?>> response = resolveRedirect(shortCode, request);
+        return response.isDone() && !response.isCompletedExceptionally() ? response.join() : response;
+    }
 
-        if (url == null || !url.isActive()) {
-            return ResponseEntity.status(404).body("This link is no longer active.");
+    private CompletableFuture<ResponseEntity<?>> resolveRedirect(String shortCode, HttpServletRequest request) {
+        // Hot links are answered from the off-heap table without touching the heap cache or Bigtable
+        HotLink hot = hotLinkTable.get(shortCode);
+        if (hot != null) {
+            return redirect(shortCode, hot.getAnalyticsKey(), hot.getLongUrl(), hot.getExpiresAtMillis(), hot.isOneTime(),
+                    request, true);
         }
 
-        try {
-            LocalDateTime now = LocalDateTime.now();
-            LocalDateTime creation = LocalDateTime.parse(url.getCreationDate(), DateTimeFormatter.ISO_DATE_TIME);
-            LocalDateTime expiration = LocalDateTime.parse(url.getExpirationDate(), DateTimeFormatter.ISO_DATE_TIME);
-
-            // Special 24-hour rule for user123
-            if ("user123".equalsIgnoreCase(url.getUserId())) {
-                expiration = creation.plusHours(24);
+        CompletableFuture<ShortUrl> lookup = urlShortenerService.getShortUrlAsync(shortCode);
+        // A completed lookup (cache hit) continues on this request thread, which may wait
+        boolean onRequestThread = lookup.isDone();
+        return lookup.thenCompose(url -> {
+            // Links deactivated by the expiry sweeper still answer "expired"
+            if (url == null || (!url.isActive() && !url.isExpiredAt(clock.millis()))) {
+                return done(ResponseEntity.status(404).body("This link is no longer active."));
             }
 
-            if (now.isAfter(expiration)) {
-                // You can optionally mark the link inactive in the DB here
-                return ResponseEntity.ok("Your link has expired.");
-            }
+            hotLinkTable.offer(url);
+            return redirect(shortCode, url.getAnalyticsKey(), url.getLongUrl(), url.getExpirationMillis(),
+                    url.isOneTime(), request, onRequestThread);
+        });
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace(); // Skip check on parse failure
+    private CompletableFuture<ResponseEntity<?>> redirect(String shortCode, String analyticsKey, String longUrl,
+                                                          long expiresAtMillis, boolean oneTime,
+                                                          HttpServletRequest request, boolean mayWait) {
+        if (clock.millis() > expiresAtMillis) {
+            // ExpiredLinkSweeper marks the link inactive in storage
+            return done(ResponseEntity.ok("Your link has expired."));
         }
+        if (!oneTime) {
+            return done(found(analyticsKey, longUrl, request, mayWait));
+        }
+
+        // Only the request that flips the link to inactive in storage is redirected
+        return urlShortenerService.consumeOneTimeLinkAsync(shortCode).thenApply(consumed -> consumed
+                ? found(analyticsKey, longUrl, request, false)
+                : ResponseEntity.status(404).body("This link is no longer active."));
+    }
 
-        // Log click before redirect
-        urlShortenerService.recordClick(shortCode, request);
+    // mayWait is false when running on a storage callback thread, which must never block
+    private ResponseEntity<?> found(String analyticsKey, String longUrl, HttpServletRequest request, boolean mayWait) {
+        // Log click before redirect, under the code the link's history is kept for
+        if (mayWait) {
+            urlShortenerService.recordClick(analyticsKey, request);
+        } else {
+            urlShortenerService.recordClickWithoutWaiting(analyticsKey, request);
+        }
 
-        String destination = url.getLongUrl();
+        String destination = longUrl;
         if (!destination.startsWith("http://") && !destination.startsWith("https://")) {
             destination = "https://" + destination;
         }
@@ -122,6 +230,10 @@ public class UrlShortenerController {
                 .build();
     }
 
+    private static CompletableFuture<ResponseEntity<?>> done(ResponseEntity<?> response) {
+        return CompletableFuture.completedFuture(response);
+    }
+
     /**
      * Searches for short URLs based on a query string.
      * 
@@ -134,6 +246,48 @@ public class UrlShortenerController {
         return ResponseEntity.ok(result);
     }
 
+    /**
+     * Returns one page of a user's short URLs with click counts, newest first.
+     * 
+     * @param query The user ID whose links are listed
+     * @param limit Maximum number of links on the page
+     * @param cursor Cursor from the previous page, omitted for the first page
+     * @return ResponseEntity with the page and the cursor for the next one
+     */
+    @GetMapping("/search/page")
+    public ResponseEntity<CursorPage<ShortUrlDto>> searchShortUrlsPage(
+            @RequestParam String query,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(urlShortenerService.getShortUrlsWithClickCountsPage(query, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Searches a user's short URLs by short code, alias or long URL, best matches first.
+     * 
+     * @param userId The owner of the links
+     * @param query The text to look for
+     * @param limit Maximum number of links on the page
+     * @param cursor Cursor from the previous page, omitted for the first page
+     * @return ResponseEntity with the ranked page and the cursor for the next one
+     */
+    @GetMapping("/search/links")
+    public ResponseEntity<CursorPage<ShortUrlDto>> searchLinks(
+            @RequestParam String userId,
+            @RequestParam String query,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(linkSearchService.search(userId, query, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Deletes a short URL by its code.
      * 
@@ -164,6 +318,114 @@ public class UrlShortenerController {
         return ResponseEntity.ok(details);
     }
 
+    /**
+     * Returns one page of click analytics for a short URL, newest first.
+     * 
+     * @param shortCode The short code to analyze
+     * @param from Oldest click to include as an ISO-8601 instant, optional
+     * @param to Newest click to include as an ISO-8601 instant, optional
+     * @param fields Comma-separated fields to return, all fields if omitted
+     * @param limit Maximum number of clicks on the page
+     * @param cursor Cursor from the previous page, omitted for the first page
+     * @return ResponseEntity with the page and the cursor for the next one
+     */
+    @GetMapping("/analytics/details/page")
+    public ResponseEntity<CursorPage<Map<String, String>>> getClickDetailsPage(
+            @RequestParam String shortCode,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String fields,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(clickAnalyticsService.getClickDetailsPage(
+                    urlShortenerService.analyticsKey(shortCode), parseInstant(from, 0L), parseInstant(to, Long.MAX_VALUE),
+                    clickAnalyticsService.parseFields(fields), limit, cursor));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Streams all click analytics for a short URL as newline-delimited JSON, newest first.
+     * Rows are written as they arrive from Bigtable, so the response size is unbounded
+     * while server memory stays constant.
+     * 
+     * @param shortCode The short code to analyze
+     * @param from Oldest click to include as an ISO-8601 instant, optional
+     * @param to Newest click to include as an ISO-8601 instant, optional
+     * @param fields Comma-separated fields to return, all fields if omitted
+     * @return ResponseEntity streaming one JSON object per line
+     */
+    @GetMapping("/analytics/details/stream")
+    public ResponseEntity<StreamingResponseBody> streamClickDetails(
+            @RequestParam String shortCode,
+            @RequestParam(required = false) String from,
+            @RequestParam(required = false) String to,
+            @RequestParam(required = false) String fields) {
+        long fromMillis;
+        long toMillis;
+        Set<String> selected;
+        try {
+            fromMillis = parseInstant(from, 0L);
+            toMillis = parseInstant(to, Long.MAX_VALUE);
+            selected = clickAnalyticsService.parseFields(fields);
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String analyticsKey = urlShortenerService.analyticsKey(shortCode);
+        StreamingResponseBody body = out -> {
+            OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+            try {
+                clickAnalyticsService.streamClickDetails(analyticsKey, fromMillis, toMillis, selected, record -> {
+                    try {
+                        ndjsonWriter.writeValue(buffered, record);
+                        buffered.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                // Client went away; closing the click stream cancels the Bigtable reads
+                throw e.getCause();
+            }
+            buffered.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    private static long parseInstant(String value, long defaultMillis) {
+        return value == null || value.isEmpty() ? defaultMillis : Instant.parse(value).toEpochMilli();
+    }
+
+    /**
+     * Returns a click time series for a short URL from the pre-aggregated rollups.
+     * 
+     * @param shortCode The short code to analyze
+     * @param granularity Bucket size: MINUTE, HOUR or DAY
+     * @param from Start of the range as an ISO-8601 instant
+     * @param to End of the range as an ISO-8601 instant, defaults to now
+     * @return ResponseEntity with per-bucket counts and top referrers, user agents and locations
+     */
+    @GetMapping("/analytics/timeseries")
+    public ResponseEntity<ClickTimeSeries> getClickTimeSeries(
+            @RequestParam String shortCode,
+            @RequestParam(defaultValue = "HOUR") RollupGranularity granularity,
+            @RequestParam String from,
+            @RequestParam(required = false) String to) {
+        try {
+            long fromMillis = Instant.parse(from).toEpochMilli();
+            long toMillis = to == null ? System.currentTimeMillis() : Instant.parse(to).toEpochMilli();
+            return ResponseEntity.ok(clickAnalyticsService.getTimeSeries(
+                    urlShortenerService.analyticsKey(shortCode), granularity, fromMillis, toMillis));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     /**
      * Updates an existing short code to a new value.
      * 
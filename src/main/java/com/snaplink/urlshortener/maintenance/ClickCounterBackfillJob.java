@@ -0,0 +1,41 @@
+package com.snaplink.urlshortener.maintenance;
+
+import com.snaplink.urlshortener.repository.BigtableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * One-time job that initializes the per-link click counters from existing click rows.
+ * Enable with {@code app.maintenance.click-counter-backfill.enabled=true} and set
+ * {@code cutoff} to the time the first counter-maintaining version was deployed.
+ */
+@Component
+@ConditionalOnProperty(name = "app.maintenance.click-counter-backfill.enabled", havingValue = "true")
+public class ClickCounterBackfillJob {
+    private static final Logger logger = LoggerFactory.getLogger(ClickCounterBackfillJob.class);
+
+    private final BigtableRepository repository;
+    private final LocalDateTime cutoff;
+
+    public ClickCounterBackfillJob(
+            BigtableRepository repository,
+            @Value("${app.maintenance.click-counter-backfill.cutoff}") String cutoff
+    ) {
+        this.repository = repository;
+        this.cutoff = LocalDateTime.parse(cutoff);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        logger.info("Starting click counter backfill for clicks before {}", cutoff);
+        int links = repository.backfillClickCounters(cutoff);
+        logger.info("Click counter backfill finished: {} links initialized", links);
+    }
+}
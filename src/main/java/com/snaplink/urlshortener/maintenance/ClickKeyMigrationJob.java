@@ -0,0 +1,40 @@
+package com.snaplink.urlshortener.maintenance;
+
+import com.snaplink.urlshortener.repository.BigtableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-time job that rewrites legacy click rows into the bucketed key layout.
+ * Enable with {@code app.maintenance.click-key-migration.enabled=true} for a single deploy.
+ * The click counter backfill counts rows in both layouts, so it may run before or after this
+ * job, but not in the same deploy.
+ */
+@Component
+@ConditionalOnProperty(name = "app.maintenance.click-key-migration.enabled", havingValue = "true")
+public class ClickKeyMigrationJob {
+    private static final Logger logger = LoggerFactory.getLogger(ClickKeyMigrationJob.class);
+
+    private final BigtableRepository repository;
+    private final int chunkSize;
+
+    public ClickKeyMigrationJob(
+            BigtableRepository repository,
+            @Value("${app.maintenance.click-key-migration.chunk-size:1000}") int chunkSize
+    ) {
+        this.repository = repository;
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        logger.info("Starting click row key migration");
+        long migrated = repository.migrateLegacyClickRows(chunkSize);
+        logger.info("Click row key migration finished: {} rows migrated", migrated);
+    }
+}
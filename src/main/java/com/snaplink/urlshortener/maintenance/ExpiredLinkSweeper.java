@@ -0,0 +1,91 @@
+package com.snaplink.urlshortener.maintenance;
+
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.repository.ClickStore;
+import com.snaplink.urlshortener.repository.UrlStore;
+import com.snaplink.urlshortener.service.HotLinkTable;
+import com.snaplink.urlshortener.service.ShortUrlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Periodically deactivates links whose expiration time has passed, reading only the due
+ * part of the expiry index, and optionally deletes their click analytics.
+ * Local caches are evicted right away; other instances drop their entries when the cache
+ * TTLs run out, and until then the redirect expiry check still answers "expired".
+ * Running on several instances is safe: each link is flipped by one conditional mutation.
+ */
+@Component
+@ConditionalOnProperty(name = "app.expiry.sweep.enabled", havingValue = "true", matchIfMissing = true)
+public class ExpiredLinkSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(ExpiredLinkSweeper.class);
+    // Bounds one run; whatever is left is picked up by the next one
+    private static final int MAX_BATCHES_PER_RUN = 100;
+
+    private final UrlStore urlStore;
+    private final ClickStore clickStore;
+    private final ShortUrlCache shortUrlCache;
+    private final HotLinkTable hotLinkTable;
+    private final int batchSize;
+    private final boolean purgeAnalytics;
+
+    public ExpiredLinkSweeper(
+            UrlStore urlStore,
+            ClickStore clickStore,
+            ShortUrlCache shortUrlCache,
+            HotLinkTable hotLinkTable,
+            @Value("${app.expiry.sweep.batch-size:1000}") int batchSize,
+            @Value("${app.expiry.sweep.purge-analytics:false}") boolean purgeAnalytics
+    ) {
+        this.urlStore = urlStore;
+        this.clickStore = clickStore;
+        this.shortUrlCache = shortUrlCache;
+        this.hotLinkTable = hotLinkTable;
+        this.batchSize = batchSize;
+        this.purgeAnalytics = purgeAnalytics;
+    }
+
+    @Scheduled(fixedDelayString = "${app.expiry.sweep.interval-ms:60000}",
+               initialDelayString = "${app.expiry.sweep.interval-ms:60000}")
+    public void sweep() {
+        int total = 0;
+        try {
+            for (int batch = 0; batch < MAX_BATCHES_PER_RUN; batch++) {
+                List<String> deactivated = urlStore.deactivateExpired(System.currentTimeMillis(), batchSize);
+                for (String shortCode : deactivated) {
+                    shortUrlCache.invalidate(shortCode);
+                    hotLinkTable.remove(shortCode);
+                }
+                if (purgeAnalytics && !deactivated.isEmpty()) {
+                    clickStore.deleteClickData(analyticsKeys(deactivated));
+                }
+                total += deactivated.size();
+                if (deactivated.isEmpty()) break;
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Expired link sweep failed after {} links", total, e);
+        }
+        if (total > 0) {
+            logger.info("Deactivated {} expired links", total);
+        }
+    }
+
+    // Renamed links record their clicks under the code they were created with; one multi-row read per batch
+    private List<String> analyticsKeys(List<String> shortCodes) {
+        Map<String, String> keys = new LinkedHashMap<>();
+        shortCodes.forEach(code -> keys.put(code, code));
+        for (ShortUrl url : urlStore.getShortUrls(shortCodes)) {
+            keys.put(url.getShortCode(), url.getAnalyticsKey());
+        }
+        return new ArrayList<>(keys.values());
+    }
+}
@@ -0,0 +1,33 @@
+package com.snaplink.urlshortener.maintenance;
+
+import com.snaplink.urlshortener.repository.BigtableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-time job that builds the expiry index rows in url_tracking
+ * for links created before the index existed.
+ * Enable with {@code app.maintenance.expiry-index-backfill.enabled=true} for a single deploy.
+ */
+@Component
+@ConditionalOnProperty(name = "app.maintenance.expiry-index-backfill.enabled", havingValue = "true")
+public class ExpiryIndexBackfillJob {
+    private static final Logger logger = LoggerFactory.getLogger(ExpiryIndexBackfillJob.class);
+
+    private final BigtableRepository repository;
+
+    public ExpiryIndexBackfillJob(BigtableRepository repository) {
+        this.repository = repository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        logger.info("Starting expiry index backfill");
+        int indexed = repository.backfillExpiryIndex();
+        logger.info("Expiry index backfill finished: {} links indexed", indexed);
+    }
+}
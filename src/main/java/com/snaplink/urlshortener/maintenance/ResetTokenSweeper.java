@@ -0,0 +1,37 @@
+package com.snaplink.urlshortener.maintenance;
+
+import com.snaplink.urlshortener.repository.UserStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Periodically removes expired password-reset token lookup rows so they do not
+ * accumulate in user_profiles.
+ */
+@Component
+public class ResetTokenSweeper {
+    private static final Logger logger = LoggerFactory.getLogger(ResetTokenSweeper.class);
+
+    private final UserStore repository;
+
+    public ResetTokenSweeper(UserStore repository) {
+        this.repository = repository;
+    }
+
+    @Scheduled(fixedDelayString = "${app.security.reset-token-sweep-interval-ms:3600000}",
+               initialDelayString = "${app.security.reset-token-sweep-interval-ms:3600000}")
+    public void sweep() {
+        try {
+            int purged = repository.purgeExpiredResetTokens(LocalDateTime.now());
+            if (purged > 0) {
+                logger.info("Purged {} expired reset tokens", purged);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Reset token sweep failed", e);
+        }
+    }
+}
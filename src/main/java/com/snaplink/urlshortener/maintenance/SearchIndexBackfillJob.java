@@ -0,0 +1,33 @@
+package com.snaplink.urlshortener.maintenance;
+
+import com.snaplink.urlshortener.repository.BigtableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-time job that builds the trigram search index rows in url_tracking
+ * for links created before the index existed.
+ * Enable with {@code app.maintenance.search-index-backfill.enabled=true} for a single deploy.
+ */
+@Component
+@ConditionalOnProperty(name = "app.maintenance.search-index-backfill.enabled", havingValue = "true")
+public class SearchIndexBackfillJob {
+    private static final Logger logger = LoggerFactory.getLogger(SearchIndexBackfillJob.class);
+
+    private final BigtableRepository repository;
+
+    public SearchIndexBackfillJob(BigtableRepository repository) {
+        this.repository = repository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        logger.info("Starting search index backfill");
+        int indexed = repository.backfillSearchIndex();
+        logger.info("Search index backfill finished: {} links indexed", indexed);
+    }
+}
@@ -0,0 +1,39 @@
+package com.snaplink.urlshortener.maintenance;
+
+import com.snaplink.urlshortener.repository.BigtableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-time job that rewrites legacy url rows into the compact single-cell layout.
+ * Enable with {@code app.maintenance.url-encoding-migration.enabled=true} once every
+ * instance runs a version that reads both layouts.
+ */
+@Component
+@ConditionalOnProperty(name = "app.maintenance.url-encoding-migration.enabled", havingValue = "true")
+public class ShortUrlEncodingMigrationJob {
+    private static final Logger logger = LoggerFactory.getLogger(ShortUrlEncodingMigrationJob.class);
+
+    private final BigtableRepository repository;
+    private final int chunkSize;
+
+    public ShortUrlEncodingMigrationJob(
+            BigtableRepository repository,
+            @Value("${app.maintenance.url-encoding-migration.chunk-size:500}") int chunkSize
+    ) {
+        this.repository = repository;
+        this.chunkSize = chunkSize;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        logger.info("Starting url row encoding migration");
+        long migrated = repository.migrateShortUrlEncoding(chunkSize);
+        logger.info("Url row encoding migration finished: {} rows migrated", migrated);
+    }
+}
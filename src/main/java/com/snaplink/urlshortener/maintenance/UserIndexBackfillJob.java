@@ -0,0 +1,33 @@
+package com.snaplink.urlshortener.maintenance;
+
+import com.snaplink.urlshortener.repository.BigtableRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * One-time job that builds the email/username lookup rows in user_profiles
+ * for users created before those rows existed.
+ * Enable with {@code app.maintenance.user-index-backfill.enabled=true} for a single deploy.
+ */
+@Component
+@ConditionalOnProperty(name = "app.maintenance.user-index-backfill.enabled", havingValue = "true")
+public class UserIndexBackfillJob {
+    private static final Logger logger = LoggerFactory.getLogger(UserIndexBackfillJob.class);
+
+    private final BigtableRepository repository;
+
+    public UserIndexBackfillJob(BigtableRepository repository) {
+        this.repository = repository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void run() {
+        logger.info("Starting user index backfill");
+        int indexed = repository.backfillUserIndexes();
+        logger.info("User index backfill finished: {} users indexed", indexed);
+    }
+}
@@ -0,0 +1,81 @@
+package com.snaplink.urlshortener.model;
+
+/**
+ * Progress of an account deletion job. Instances are immutable snapshots; the job
+ * publishes a new one after every batch of links it deletes.
+ */
+public class AccountDeletionStatus {
+
+    /**
+     * Lifecycle of a deletion job.
+     */
+    public enum State { RUNNING, COMPLETED, FAILED }
+
+    private final String email;
+    private final State state;
+    private final long linksDeleted;
+    private final long clickRowsDeleted;
+    private final String startedAt;
+    private final String finishedAt;
+    private final String error;
+
+    public AccountDeletionStatus(String email, State state, long linksDeleted, long clickRowsDeleted,
+                                 String startedAt, String finishedAt, String error) {
+        this.email = email;
+        this.state = state;
+        this.linksDeleted = linksDeleted;
+        this.clickRowsDeleted = clickRowsDeleted;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.error = error;
+    }
+
+    /**
+     * Returns the email of the account being deleted.
+     *
+     * @return The email
+     */
+    public String getEmail() { return email; }
+
+    /**
+     * Returns whether the job is still running, finished, or failed.
+     *
+     * @return The state
+     */
+    public State getState() { return state; }
+
+    /**
+     * Returns how many of the account's links have been deleted so far.
+     *
+     * @return The link count
+     */
+    public long getLinksDeleted() { return linksDeleted; }
+
+    /**
+     * Returns how many click and rollup rows of those links have been deleted so far.
+     *
+     * @return The row count
+     */
+    public long getClickRowsDeleted() { return clickRowsDeleted; }
+
+    /**
+     * Returns when the job started.
+     *
+     * @return The start time as an ISO-8601 instant
+     */
+    public String getStartedAt() { return startedAt; }
+
+    /**
+     * Returns when the job completed or failed.
+     *
+     * @return The end time as an ISO-8601 instant, or null while running
+     */
+    public String getFinishedAt() { return finishedAt; }
+
+    /**
+     * Returns why the job failed.
+     *
+     * @return The error message, or null unless the state is FAILED
+     */
+    public String getError() { return error; }
+}
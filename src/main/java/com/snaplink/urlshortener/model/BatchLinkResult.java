@@ -0,0 +1,70 @@
+package com.snaplink.urlshortener.model;
+
+/**
+ * Outcome of one link in a batch creation request.
+ * Results refer to their link by its zero-based position in the request.
+ */
+public class BatchLinkResult {
+
+    /**
+     * What happened to a link of the batch.
+     */
+    public enum Status {
+        /** The link was created. */
+        CREATED,
+        /** The custom alias is already taken, possibly by an earlier link of the same batch. */
+        CONFLICT,
+        /** The link spec is incomplete, has an unparseable expiration date, or asks for a reserved alias. */
+        INVALID,
+        /** The link was not read because the batch exceeded its size limit or was malformed. */
+        REJECTED
+    }
+
+    private final int index;
+    private final Status status;
+    private final ShortUrl shortUrl;
+    private final String error;
+
+    private BatchLinkResult(int index, Status status, ShortUrl shortUrl, String error) {
+        this.index = index;
+        this.status = status;
+        this.shortUrl = shortUrl;
+        this.error = error;
+    }
+
+    public static BatchLinkResult created(int index, ShortUrl shortUrl) {
+        return new BatchLinkResult(index, Status.CREATED, shortUrl, null);
+    }
+
+    public static BatchLinkResult failed(int index, Status status, String error) {
+        return new BatchLinkResult(index, status, null, error);
+    }
+
+    /**
+     * Returns the position of the link in the request.
+     *
+     * @return The zero-based index
+     */
+    public int getIndex() { return index; }
+
+    /**
+     * Returns the outcome for the link.
+     *
+     * @return The status
+     */
+    public Status getStatus() { return status; }
+
+    /**
+     * Returns the created link.
+     *
+     * @return The link, or null unless the status is CREATED
+     */
+    public ShortUrl getShortUrl() { return shortUrl; }
+
+    /**
+     * Returns why the link was not created.
+     *
+     * @return The error message, or null if the link was created
+     */
+    public String getError() { return error; }
+}
@@ -0,0 +1,89 @@
+package com.snaplink.urlshortener.model;
+
+/**
+ * Represents a single click on a short URL, captured on the redirect path
+ * and handed to the click ingestion pipeline for asynchronous persistence.
+ */
+public class ClickEvent {
+    private final String shortCode;
+    private final String ipAddress;
+    private final String referrer;
+    private final String geoLocation;
+    private final String userAgent;
+    private final long timestampMillis;
+
+    /**
+     * Creates a new click event.
+     *
+     * @param shortCode The short code that was clicked
+     * @param ipAddress The client IP address
+     * @param referrer The Referer header, if any
+     * @param geoLocation The resolved geo location, if any
+     * @param userAgent The User-Agent header, if any
+     * @param timestampMillis The time of the click in epoch milliseconds
+     */
+    public ClickEvent(String shortCode, String ipAddress, String referrer, String geoLocation, String userAgent, long timestampMillis) {
+        this.shortCode = shortCode;
+        this.ipAddress = ipAddress;
+        this.referrer = referrer;
+        this.geoLocation = geoLocation;
+        this.userAgent = userAgent;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /**
+     * Returns the short code that was clicked.
+     *
+     * @return The short code
+     */
+    public String getShortCode() { return shortCode; }
+
+    /**
+     * Returns the client IP address.
+     *
+     * @return The IP address
+     */
+    public String getIpAddress() { return ipAddress; }
+
+    /**
+     * Returns the referrer of the click.
+     *
+     * @return The referrer
+     */
+    public String getReferrer() { return referrer; }
+
+    /**
+     * Returns the geo location of the click.
+     *
+     * @return The geo location
+     */
+    public String getGeoLocation() { return geoLocation; }
+
+    /**
+     * Returns the user agent of the click.
+     *
+     * @return The user agent
+     */
+    public String getUserAgent() { return userAgent; }
+
+    /**
+     * Returns the time of the click in epoch milliseconds.
+     *
+     * @return The click timestamp
+     */
+    public long getTimestampMillis() { return timestampMillis; }
+
+    /**
+     * Returns an estimate of the serialized size of this event in bytes.
+     * Used by the ingestion pipeline to bound batch sizes.
+     *
+     * @return The estimated size in bytes
+     */
+    public int estimatedBytes() {
+        return 64 + length(shortCode) + length(ipAddress) + length(referrer) + length(geoLocation) + length(userAgent);
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -0,0 +1,153 @@
+package com.snaplink.urlshortener.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Click time series for one short URL, built from pre-aggregated rollup rows.
+ */
+public class ClickTimeSeries {
+    private final String shortCode;
+    private final RollupGranularity granularity;
+    private final long totalClicks;
+    private final Map<String, Long> topReferrers;
+    private final Map<String, Long> topUserAgents;
+    private final Map<String, Long> topGeoLocations;
+    private final List<Point> points;
+
+    /**
+     * Creates a time series.
+     *
+     * @param shortCode The short code the series belongs to
+     * @param granularity The bucket size of the points
+     * @param totalClicks Total clicks over the whole range
+     * @param topReferrers Most frequent referrer hosts over the range
+     * @param topUserAgents Most frequent browsers over the range
+     * @param topGeoLocations Most frequent geo locations over the range
+     * @param points One point per non-empty bucket, oldest first
+     */
+    public ClickTimeSeries(String shortCode, RollupGranularity granularity, long totalClicks,
+                           Map<String, Long> topReferrers, Map<String, Long> topUserAgents,
+                           Map<String, Long> topGeoLocations, List<Point> points) {
+        this.shortCode = shortCode;
+        this.granularity = granularity;
+        this.totalClicks = totalClicks;
+        this.topReferrers = topReferrers;
+        this.topUserAgents = topUserAgents;
+        this.topGeoLocations = topGeoLocations;
+        this.points = points;
+    }
+
+    /**
+     * Returns the short code the series belongs to.
+     *
+     * @return The short code
+     */
+    public String getShortCode() { return shortCode; }
+
+    /**
+     * Returns the bucket size of the points.
+     *
+     * @return The granularity
+     */
+    public RollupGranularity getGranularity() { return granularity; }
+
+    /**
+     * Returns the total clicks over the whole range.
+     *
+     * @return The total clicks
+     */
+    public long getTotalClicks() { return totalClicks; }
+
+    /**
+     * Returns the most frequent referrer hosts over the range.
+     *
+     * @return Clicks per referrer host
+     */
+    public Map<String, Long> getTopReferrers() { return topReferrers; }
+
+    /**
+     * Returns the most frequent browsers over the range.
+     *
+     * @return Clicks per browser
+     */
+    public Map<String, Long> getTopUserAgents() { return topUserAgents; }
+
+    /**
+     * Returns the most frequent geo locations over the range.
+     *
+     * @return Clicks per geo location
+     */
+    public Map<String, Long> getTopGeoLocations() { return topGeoLocations; }
+
+    /**
+     * Returns one point per non-empty bucket, oldest first.
+     *
+     * @return The points
+     */
+    public List<Point> getPoints() { return points; }
+
+    /**
+     * Aggregated clicks of one time bucket.
+     */
+    public static class Point {
+        private final long bucketStart;
+        private final long clicks;
+        private final Map<String, Long> referrers;
+        private final Map<String, Long> userAgents;
+        private final Map<String, Long> geoLocations;
+
+        /**
+         * Creates a point.
+         *
+         * @param bucketStart Start of the bucket in epoch milliseconds
+         * @param clicks Clicks in the bucket
+         * @param referrers Clicks per referrer host
+         * @param userAgents Clicks per browser
+         * @param geoLocations Clicks per geo location
+         */
+        public Point(long bucketStart, long clicks, Map<String, Long> referrers,
+                     Map<String, Long> userAgents, Map<String, Long> geoLocations) {
+            this.bucketStart = bucketStart;
+            this.clicks = clicks;
+            this.referrers = referrers;
+            this.userAgents = userAgents;
+            this.geoLocations = geoLocations;
+        }
+
+        /**
+         * Returns the start of the bucket.
+         *
+         * @return The bucket start in epoch milliseconds
+         */
+        public long getBucketStart() { return bucketStart; }
+
+        /**
+         * Returns the clicks in the bucket.
+         *
+         * @return The click count
+         */
+        public long getClicks() { return clicks; }
+
+        /**
+         * Returns the clicks per referrer host in the bucket.
+         *
+         * @return Clicks per referrer host
+         */
+        public Map<String, Long> getReferrers() { return referrers; }
+
+        /**
+         * Returns the clicks per browser in the bucket.
+         *
+         * @return Clicks per browser
+         */
+        public Map<String, Long> getUserAgents() { return userAgents; }
+
+        /**
+         * Returns the clicks per geo location in the bucket.
+         *
+         * @return Clicks per geo location
+         */
+        public Map<String, Long> getGeoLocations() { return geoLocations; }
+    }
+}
@@ -0,0 +1,39 @@
+package com.snaplink.urlshortener.model;
+
+import java.util.List;
+
+/**
+ * One page of results from a cursor-paginated listing.
+ * The cursor is opaque to clients and is passed back unchanged to fetch the next page.
+ *
+ * @param <T> The type of the items on the page
+ */
+public class CursorPage<T> {
+    private final List<T> items;
+    private final String nextCursor;
+
+    /**
+     * Creates a page of results.
+     *
+     * @param items The items on this page
+     * @param nextCursor The cursor for the next page, or null if this is the last page
+     */
+    public CursorPage(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Returns the items on this page.
+     *
+     * @return The page items
+     */
+    public List<T> getItems() { return items; }
+
+    /**
+     * Returns the cursor for the next page.
+     *
+     * @return The next cursor, or null if there are no more results
+     */
+    public String getNextCursor() { return nextCursor; }
+}
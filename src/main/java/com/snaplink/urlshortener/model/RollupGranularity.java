@@ -0,0 +1,42 @@
+package com.snaplink.urlshortener.model;
+
+/**
+ * Time bucket sizes of the pre-aggregated click rollups. Buckets are aligned to UTC.
+ */
+public enum RollupGranularity {
+    MINUTE("m", 60_000L),
+    HOUR("h", 3_600_000L),
+    DAY("d", 86_400_000L);
+
+    private final String keyPart;
+    private final long millis;
+
+    RollupGranularity(String keyPart, long millis) {
+        this.keyPart = keyPart;
+        this.millis = millis;
+    }
+
+    /**
+     * Returns the short tag used for this granularity in rollup row keys.
+     *
+     * @return The row key tag
+     */
+    public String getKeyPart() { return keyPart; }
+
+    /**
+     * Returns the length of one bucket in milliseconds.
+     *
+     * @return The bucket length
+     */
+    public long getMillis() { return millis; }
+
+    /**
+     * Returns the start of the bucket containing the given time.
+     *
+     * @param timestampMillis A time in epoch milliseconds
+     * @return The bucket start in epoch milliseconds
+     */
+    public long bucketStart(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, millis) * millis;
+    }
+}
@@ -1,9 +1,20 @@
 package com.snaplink.urlshortener.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
 /**
  * Represents a shortened URL in the system.
  * This class contains information about the original URL, its shortened version,
  * and various metadata such as creation date, expiration, and usage restrictions.
+ * Dates are kept as strings for storage and the API, and are parsed to epoch milliseconds
+ * once when set, so expiry checks are a single comparison. Links decoded from epoch
+ * milliseconds ({@link #fromEpochMillis}) format their date strings only when first asked for them.
  */
 public class ShortUrl {
     private String shortCode;       // Unique identifier for the shortened URL
@@ -14,6 +25,10 @@ public class ShortUrl {
     private boolean oneTime;        // If true, link expires after one use
     private boolean isActive;       // Link status (active/inactive)
     private String customAlias;     // Optional custom alias, passed in from frontend
+    private String analyticsKey;    // Code the click history is stored under, if not shortCode (after a rename)
+    private long creationMillis;    // creationDate in epoch millis, 0 if missing or unparseable
+    private long expirationMillis = Long.MAX_VALUE; // expirationDate in epoch millis, Long.MAX_VALUE if none
+    private boolean datesFromMillis; // date strings are formatted from the millis fields on first read
 
     /**
      * Default constructor for deserialization and proxy creation.
@@ -36,13 +51,43 @@ public class ShortUrl {
         this.shortCode = shortCode;
         this.longUrl = longUrl;
         this.userId = userId;
-        this.creationDate = creationDate;
-        this.expirationDate = expirationDate;
+        setCreationDate(creationDate);
+        setExpirationDate(expirationDate);
         this.oneTime = oneTime;
         this.isActive = isActive;
         this.customAlias = customAlias;
     }
 
+    /**
+     * Creates a ShortUrl from dates in epoch milliseconds, as stored in compact url records.
+     * The date strings are not built until a getter asks for them, so the redirect path,
+     * which only compares milliseconds, never formats or parses a date.
+     *
+     * @param shortCode The unique short code for the URL
+     * @param longUrl The original long URL
+     * @param userId The ID of the user who created the short URL
+     * @param creationMillis The creation time in epoch milliseconds
+     * @param expirationMillis The expiration time in epoch milliseconds, or Long.MAX_VALUE if none
+     * @param oneTime Whether the URL can only be used once
+     * @param isActive Whether the URL is currently active
+     * @param customAlias Optional custom alias for the short URL
+     * @return The new ShortUrl
+     */
+    public static ShortUrl fromEpochMillis(String shortCode, String longUrl, String userId, long creationMillis,
+                                           long expirationMillis, boolean oneTime, boolean isActive, String customAlias) {
+        ShortUrl url = new ShortUrl();
+        url.shortCode = shortCode;
+        url.longUrl = longUrl;
+        url.userId = userId;
+        url.creationMillis = creationMillis;
+        url.expirationMillis = expirationMillis;
+        url.datesFromMillis = true;
+        url.oneTime = oneTime;
+        url.isActive = isActive;
+        url.customAlias = customAlias;
+        return url;
+    }
+
     // Getters and Setters
     /**
      * Returns the short code of the URL.
@@ -86,33 +131,94 @@ public class ShortUrl {
      */
     public void setUserId(String userId) { this.userId = userId; }
 
+    /**
+     * Returns the code under which clicks of this link are recorded in url_analytics.
+     * A renamed link keeps recording under its original code, so its history is not copied.
+     *
+     * @return The analytics key, which is the short code unless the link was renamed
+     */
+    @JsonIgnore
+    public String getAnalyticsKey() { return analyticsKey != null ? analyticsKey : shortCode; }
+
+    /**
+     * Sets the code under which clicks of this link are recorded.
+     *
+     * @param analyticsKey The analytics key, or null to use the short code
+     */
+    public void setAnalyticsKey(String analyticsKey) { this.analyticsKey = analyticsKey; }
+
     /**
      * Returns the creation date of the short URL.
      *
      * @return The creation date
      */
-    public String getCreationDate() { return creationDate; }
+    public String getCreationDate() {
+        // Instances are shared between threads; racing callers format the same string
+        if (creationDate == null && datesFromMillis) {
+            creationDate = Instant.ofEpochMilli(creationMillis).toString();
+        }
+        return creationDate;
+    }
 
     /**
      * Sets the creation date of the short URL.
      *
      * @param creationDate The new creation date
      */
-    public void setCreationDate(String creationDate) { this.creationDate = creationDate; }
+    public void setCreationDate(String creationDate) {
+        formatPendingDates();
+        this.creationDate = creationDate;
+        Long millis = parseEpochMillis(creationDate);
+        this.creationMillis = millis == null ? 0L : millis;
+    }
+
+    /**
+     * Returns the creation date in epoch milliseconds.
+     *
+     * @return The creation time, or 0 if the creation date is missing or unparseable
+     */
+    @JsonIgnore
+    public long getCreationMillis() { return creationMillis; }
 
     /**
      * Returns the expiration date of the short URL.
      *
      * @return The expiration date
      */
-    public String getExpirationDate() { return expirationDate; }
+    public String getExpirationDate() {
+        if (expirationDate == null && datesFromMillis && expirationMillis != Long.MAX_VALUE) {
+            expirationDate = Instant.ofEpochMilli(expirationMillis).toString();
+        }
+        return expirationDate;
+    }
 
     /**
      * Sets the expiration date of the short URL.
      *
      * @param expirationDate The new expiration date
      */
-    public void setExpirationDate(String expirationDate) { this.expirationDate = expirationDate; }
+    public void setExpirationDate(String expirationDate) {
+        formatPendingDates();
+        this.expirationDate = expirationDate;
+        Long millis = parseEpochMillis(expirationDate);
+        this.expirationMillis = millis == null ? Long.MAX_VALUE : millis;
+    }
+
+    /**
+     * Returns the expiration date in epoch milliseconds.
+     *
+     * @return The expiration time, or Long.MAX_VALUE if the link does not expire
+     */
+    @JsonIgnore
+    public long getExpirationMillis() { return expirationMillis; }
+
+    /**
+     * Returns whether the link has expired at the given time.
+     *
+     * @param nowMillis The current time in epoch milliseconds
+     * @return True if the expiration time has passed
+     */
+    public boolean isExpiredAt(long nowMillis) { return nowMillis > expirationMillis; }
 
     /**
      * Returns whether the URL can only be used once.
@@ -156,6 +262,34 @@ public class ShortUrl {
      */
     public void setCustomAlias(String customAlias) { this.customAlias = customAlias; }
 
+    // Fixes both date strings before one of them is replaced, so the other keeps its value
+    private void formatPendingDates() {
+        if (!datesFromMillis) return;
+        getCreationDate();
+        getExpirationDate();
+        datesFromMillis = false;
+    }
+
+    /**
+     * Parses a date as written by this application: an Instant string, or for older rows
+     * a zone-less ISO date-time, which is read as UTC.
+     *
+     * @param date The date string
+     * @return Epoch milliseconds, or null if the date is missing or unparseable
+     */
+    public static Long parseEpochMillis(String date) {
+        if (date == null || date.isEmpty()) return null;
+        try {
+            return Instant.parse(date).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(date, DateTimeFormatter.ISO_DATE_TIME).toInstant(ZoneOffset.UTC).toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                return null;
+            }
+        }
+    }
+
     /**
      * Returns a string representation of the ShortUrl object.
      * Used for debugging purposes.
@@ -168,8 +302,8 @@ public class ShortUrl {
                 "shortCode='" + shortCode + '\'' +
                 ", longUrl='" + longUrl + '\'' +
                 ", userId='" + userId + '\'' +
-                ", creationDate='" + creationDate + '\'' +
-                ", expirationDate='" + expirationDate + '\'' +
+                ", creationDate='" + getCreationDate() + '\'' +
+                ", expirationDate='" + getExpirationDate() + '\'' +
                 ", oneTime=" + oneTime +
                 ", isActive=" + isActive +
                 '}';
@@ -9,7 +9,7 @@ import java.io.Serializable;
 public class ShortUrlDto implements Serializable {
     private String shortCode;
     private String longUrl;
-    private int clickCount;
+    private long clickCount;
 
     /**
      * Constructs a new ShortUrlDto from a ShortUrl entity and its click count.
@@ -17,7 +17,7 @@ public class ShortUrlDto implements Serializable {
      * @param url The ShortUrl entity to convert to DTO
      * @param clickCount The number of times the short URL has been clicked
      */
-    public ShortUrlDto(ShortUrl url, int clickCount) {
+    public ShortUrlDto(ShortUrl url, long clickCount) {
         this.shortCode = url.getShortCode();
         this.longUrl = url.getLongUrl();
         this.clickCount = clickCount;
@@ -46,7 +46,7 @@ public class ShortUrlDto implements Serializable {
      *
      * @return The click count
      */
-    public int getClickCount() {
+    public long getClickCount() {
         return clickCount;
     }
 }
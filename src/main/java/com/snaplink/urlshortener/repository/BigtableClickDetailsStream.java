@@ -0,0 +1,99 @@
+package com.snaplink.urlshortener.repository;
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Lazily reads the click rows of one link, newest bucketed clicks first followed by
+ * legacy rows in key (oldest first) order. Rows are pulled from Bigtable only as the
+ * caller iterates, so memory use does not depend on the number of clicks.
+ * Closing cancels streams that were not read to the end.
+ */
+class BigtableClickDetailsStream implements ClickDetailsStream {
+
+    private final MergingRowIterator bucketed;
+    private final Supplier<ServerStream<Row>> legacyOpener;
+    private final Set<String> fields;
+
+    private ServerStream<Row> legacy;
+    private Iterator<Row> legacyRows;
+    private String lastRowKey;
+
+    BigtableClickDetailsStream(MergingRowIterator bucketed, Supplier<ServerStream<Row>> legacyOpener, Set<String> fields) {
+        this.bucketed = bucketed;
+        this.legacyOpener = legacyOpener;
+        this.fields = fields;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (bucketed != null && bucketed.hasNext()) {
+            return true;
+        }
+        if (legacyRows == null && legacyOpener != null) {
+            legacy = legacyOpener.get();
+            legacyRows = legacy.iterator();
+        }
+        return legacyRows != null && legacyRows.hasNext();
+    }
+
+    @Override
+    public Map<String, String> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Row row = bucketed != null && bucketed.hasNext() ? bucketed.next() : legacyRows.next();
+        lastRowKey = row.getKey().toStringUtf8();
+        return toRecord(row);
+    }
+
+    @Override
+    public String cursor() {
+        return lastRowKey == null ? null
+                : Base64.getUrlEncoder().withoutPadding().encodeToString(lastRowKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a cursor produced by {@link #cursor()} back into the row key it points at.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    static String decodeCursor(String cursor) {
+        return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    }
+
+    private Map<String, String> toRecord(Row row) {
+        Map<String, String> record = new LinkedHashMap<>();
+        if (fields.contains("timestamp")) {
+            record.put("timestamp", ClickRowKeys.timestampString(lastRowKey));
+        }
+        for (String field : FIELDS) {
+            if (!field.equals("timestamp") && fields.contains(field)) {
+                List<RowCell> cells = row.getCells("click_info", field);
+                record.put(field, cells.isEmpty() ? null : cells.get(0).getValue().toStringUtf8());
+            }
+        }
+        return record;
+    }
+
+    @Override
+    public void close() {
+        if (bucketed != null) {
+            bucketed.close();
+        }
+        if (legacy != null) {
+            legacy.cancel();
+        }
+    }
+}
@@ -1,87 +1,238 @@
 package com.snaplink.urlshortener.repository;
 
+import com.snaplink.urlshortener.model.ClickEvent;
+import com.snaplink.urlshortener.model.ClickTimeSeries;
+import com.snaplink.urlshortener.model.CursorPage;
+import com.snaplink.urlshortener.model.RollupGranularity;
 import com.snaplink.urlshortener.model.ShortUrl;
 import com.snaplink.urlshortener.model.User;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.batching.Batcher;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.api.gax.rpc.ServerStream;
+import com.google.api.gax.rpc.UnaryCallSettings;
 import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.ConditionalRowMutation;
+import com.google.cloud.bigtable.data.v2.models.Filters;
+import com.google.cloud.bigtable.data.v2.models.Filters.Filter;
+import com.google.cloud.bigtable.data.v2.models.Mutation;
 import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.cloud.bigtable.data.v2.models.ReadModifyWriteRow;
 import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
 import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import com.google.cloud.bigtable.data.v2.stub.EnhancedBigtableStubSettings;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
+import org.threeten.bp.Duration;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
 
 /**
  * Repository for handling data operations with Google Cloud Bigtable.
  * Manages user profiles, URL tracking, and analytics data.
  */
 @Repository
-public class BigtableRepository {
+@Profile("!inmemory")
+public class BigtableRepository implements UserStore, UrlStore, ClickStore {
 
     private final BigtableDataClient client;
+    private final ClickRowKeys clickRowKeys;
+    private final ShortUrlRowCodec.Encoding urlEncoding;
+    private final HedgedReads hedgedReads;
 
     public BigtableRepository(
             @Value("${gcp.project-id}") String projectId,
-            @Value("${gcp.instance-id}") String instanceId
+            @Value("${gcp.instance-id}") String instanceId,
+            @Value("${app.analytics.click-key-scheme:BUCKETED}") ClickRowKeys.Scheme clickKeyScheme,
+            @Value("${app.analytics.click-key-buckets:16}") int clickKeyBuckets,
+            @Value("${app.analytics.read-legacy-click-keys:true}") boolean readLegacyClickKeys,
+            @Value("${app.storage.url-encoding:LEGACY}") ShortUrlRowCodec.Encoding urlEncoding,
+            @Value("${app.storage.deadlines.point-read-ms:1000}") long pointReadDeadlineMillis,
+            @Value("${app.storage.deadlines.point-write-ms:2000}") long pointWriteDeadlineMillis,
+            @Value("${app.storage.hedged-reads.enabled:false}") boolean hedgedReadsEnabled,
+            @Value("${app.storage.hedged-reads.percentile:0.95}") double hedgePercentile,
+            @Value("${app.storage.hedged-reads.min-delay-ms:2}") long hedgeMinDelayMillis,
+            @Value("${app.storage.hedged-reads.max-delay-ms:50}") long hedgeMaxDelayMillis,
+            @Value("${app.storage.hedged-reads.max-extra-load-percent:5}") double hedgeMaxExtraLoadPercent,
+            MeterRegistry meterRegistry
     ) throws IOException {
-        this.client = BigtableDataClient.create(projectId, instanceId);
+        BigtableDataSettings.Builder settings = BigtableDataSettings.newBuilder()
+                .setProjectId(projectId)
+                .setInstanceId(instanceId);
+        EnhancedBigtableStubSettings.Builder stub = settings.stubSettings();
+        applyDeadline(stub.readRowSettings(), pointReadDeadlineMillis);
+        applyDeadline(stub.mutateRowSettings(), pointWriteDeadlineMillis);
+        applyDeadline(stub.checkAndMutateRowSettings(), pointWriteDeadlineMillis);
+        applyDeadline(stub.readModifyWriteRowSettings(), pointWriteDeadlineMillis);
+        this.client = BigtableDataClient.create(settings.build());
+        this.clickRowKeys = new ClickRowKeys(clickKeyScheme, clickKeyBuckets, readLegacyClickKeys);
+        this.urlEncoding = urlEncoding;
+        this.hedgedReads = new HedgedReads(hedgedReadsEnabled, hedgePercentile, hedgeMinDelayMillis,
+                hedgeMaxDelayMillis, hedgeMaxExtraLoadPercent, meterRegistry);
+    }
+
+    // Caps the total time of one kind of single-row call, retries included, so a slow tablet fails
+    // the call instead of holding it for the client default of minutes. Scans and bulk mutations
+    // keep the client defaults, as backfills and migrations legitimately run long; so does a
+    // deadline of zero or less.
+    private static void applyDeadline(UnaryCallSettings.Builder<?, ?> call, long deadlineMillis) {
+        if (deadlineMillis <= 0) return;
+        Duration deadline = Duration.ofMillis(deadlineMillis);
+        RetrySettings retry = call.getRetrySettings();
+        call.setRetrySettings(retry.toBuilder()
+                .setTotalTimeout(deadline)
+                .setInitialRpcTimeout(shorter(retry.getInitialRpcTimeout(), deadline))
+                .setMaxRpcTimeout(shorter(retry.getMaxRpcTimeout(), deadline))
+                .build());
+    }
+
+    private static Duration shorter(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        hedgedReads.close();
     }
 
     private static final DateTimeFormatter ISO_FMT = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
     // ---- User Operations ----
-    public void createUser(User user) {
-        RowMutation mutation = RowMutation.create("user_profiles", "user#" + user.getId())
+    // Besides the user#<id> rows, user_profiles holds lookup rows keyed by
+    // email#<email> and username#<name> whose metadata:user_key cell names the user row.
+    private static final String USER_PREFIX = "user#";
+    private static final String EMAIL_INDEX_PREFIX = "email#";
+    private static final String USERNAME_INDEX_PREFIX = "username#";
+    // reset#<token> rows map an outstanding password-reset token to its user row
+    private static final String RESET_TOKEN_PREFIX = "reset#";
+    // A signup writes its user row right after reserving the email; older reservations without one are leftovers
+    private static final long RESERVATION_GRACE_MILLIS = 60_000L;
+
+    /**
+     * Creates a user and its email/username lookup rows.
+     * The lookup rows are claimed with conditional mutations first, so two concurrent
+     * signups for the same email or username cannot both succeed.
+     *
+     * @return true if the user was created, false if the email or username is taken
+     */
+    @Override
+    public boolean createUser(User user) {
+        String userKey = USER_PREFIX + user.getId();
+        String usernameKey = USERNAME_INDEX_PREFIX + user.getUsername();
+        String emailKey = EMAIL_INDEX_PREFIX + user.getEmail();
+
+        if (!reserveIndexRow(usernameKey, userKey)) {
+            return false;
+        }
+        if (!reserveIndexRow(emailKey, userKey)) {
+            client.mutateRow(RowMutation.create("user_profiles", usernameKey).deleteRow());
+            return false;
+        }
+
+        RowMutation mutation = RowMutation.create("user_profiles", userKey)
                 .setCell("personal", "username", user.getUsername())
                 .setCell("personal", "email", user.getEmail())
                 .setCell("security", "password", user.getPassword())
                 .setCell("subscription", "plan", user.getSubscriptionPlan())
                 .setCell("metadata", "created_at", user.getCreatedAt().toString());
         client.mutateRow(mutation);
+        return true;
     }
 
+    // Writes an index row only if it does not exist yet; returns false if it was already taken
+    private boolean reserveIndexRow(String indexKey, String userKey) {
+        ConditionalRowMutation reserve = ConditionalRowMutation.create("user_profiles", indexKey)
+                .condition(FILTERS.pass())
+                .otherwise(Mutation.create().setCell("metadata", "user_key", userKey));
+        boolean alreadyTaken = client.checkAndMutateRow(reserve);
+        return !alreadyTaken;
+    }
+
+    @Override
     public List<User> getUsers() {
         List<User> users = new ArrayList<>();
-        client.readRows(Query.create("user_profiles")).forEach(row -> {
-            String[] keyParts = row.getKey().toStringUtf8().split("#");
-            String id = keyParts.length > 1 ? keyParts[1] : "";
-            
-            // Parse timestamp
-            String createdAtStr = getCellValue(row, "metadata", "created_at");
-            LocalDateTime createdAt = null;
-            if (createdAtStr != null && !createdAtStr.isEmpty()) {
-                createdAt = LocalDateTime.parse(createdAtStr, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
-            }
-
-            String token = getCellValue(row, "security", "reset_token");
-            String expiryStr = getCellValue(row, "security", "reset_token_expiry");
-            LocalDateTime createdAtDt = createdAt == null ? null : createdAt;
-            LocalDateTime expiryDt = expiryStr == null ? null : LocalDateTime.parse(expiryStr, ISO_FMT);
-
-            User user = new User(
-                id,
-                getCellValue(row, "personal", "username"),
-                getCellValue(row, "personal", "email"),
-                getCellValue(row, "security", "password"),
-                getCellValue(row, "subscription", "plan"),
-                createdAt
-            );
-            user.setResetToken(token);
-            user.setResetTokenExpiry(expiryDt);
-            users.add(user);
-        });
+        client.readRows(Query.create("user_profiles").prefix(USER_PREFIX))
+                .forEach(row -> users.add(mapRowToUser(row)));
         return users;
     }
 
+    @Override
+    public Optional<User> findById(String id) {
+        Row row = client.readRow("user_profiles", USER_PREFIX + id);
+        return row == null ? Optional.empty() : Optional.of(mapRowToUser(row));
+    }
+
+    // Helper method to map a user#<id> row to a User object
+    private User mapRowToUser(Row row) {
+        String[] keyParts = row.getKey().toStringUtf8().split("#", 2);
+        String id = keyParts.length > 1 ? keyParts[1] : "";
+
+        // Parse timestamp
+        String createdAtStr = getCellValue(row, "metadata", "created_at");
+        LocalDateTime createdAt = null;
+        if (createdAtStr != null && !createdAtStr.isEmpty()) {
+            createdAt = LocalDateTime.parse(createdAtStr, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        }
+
+        String token = getCellValue(row, "security", "reset_token");
+        String expiryStr = getCellValue(row, "security", "reset_token_expiry");
+        LocalDateTime expiryDt = expiryStr == null ? null : LocalDateTime.parse(expiryStr, ISO_FMT);
+
+        User user = new User(
+            id,
+            getCellValue(row, "personal", "username"),
+            getCellValue(row, "personal", "email"),
+            getCellValue(row, "security", "password"),
+            getCellValue(row, "subscription", "plan"),
+            createdAt
+        );
+        user.setResetToken(token);
+        user.setResetTokenExpiry(expiryDt);
+        return user;
+    }
+
+    @Override
     public void updateUser(User user) {
-        RowMutation mut = RowMutation.create("user_profiles", "user#" + user.getId());
+        String userKey = USER_PREFIX + user.getId();
+        RowMutation mut = RowMutation.create("user_profiles", userKey);
+
+        if (user.getPassword() != null) {
+            mut.setCell("security", "password", user.getPassword());
+        }
 
         if (user.getResetToken() != null) {
             mut.setCell("security", "reset_token", user.getResetToken());
@@ -95,28 +246,164 @@ public class BigtableRepository {
             mut.deleteCells("security", "reset_token_expiry");
         }
 
+        // Write the token lookup row first so a token is never handed out without it
+        if (user.getResetToken() != null && user.getResetTokenExpiry() != null) {
+            client.mutateRow(RowMutation.create("user_profiles", RESET_TOKEN_PREFIX + user.getResetToken())
+                    .setCell("security", "user_key", userKey)
+                    .setCell("security", "expires_at", user.getResetTokenExpiry().format(ISO_FMT)));
+        }
+
         client.mutateRow(mut);
     }
 
+    // Removes the lookup row of a reset token once it has been used
+    @Override
+    public void deleteResetToken(String token) {
+        client.mutateRow(RowMutation.create("user_profiles", RESET_TOKEN_PREFIX + token).deleteRow());
+    }
+
+    /**
+     * Deletes reset-token lookup rows that expired before the given time.
+     * Only outstanding tokens are scanned, so the cost does not grow with the number of users.
+     *
+     * @return The number of lookup rows removed
+     */
+    @Override
+    public int purgeExpiredResetTokens(LocalDateTime now) {
+        int purged = 0;
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("user_profiles");
+        Query query = Query.create("user_profiles")
+                .prefix(RESET_TOKEN_PREFIX)
+                .filter(FILTERS.chain()
+                        .filter(FILTERS.qualifier().exactMatch("expires_at"))
+                        .filter(FILTERS.limit().cellsPerColumn(1)));
+
+        for (Row row : client.readRows(query)) {
+            String expiresAt = getCellValue(row, "security", "expires_at");
+            if (expiresAt == null || LocalDateTime.parse(expiresAt, ISO_FMT).isBefore(now)) {
+                batcher.add(RowMutationEntry.create(row.getKey()).deleteRow());
+                purged++;
+            }
+        }
+
+        closeBatcher(batcher);
+        return purged;
+    }
+
+    /**
+     * Deletes the user registered under this email together with its lookup rows, one row at
+     * a time: the username lookup, then the user row, then the email lookup. While the email
+     * lookup exists, a deletion that failed partway can be run again. An email lookup whose
+     * user row is already gone is such a leftover and is removed once it is older than
+     * {@code RESERVATION_GRACE_MILLIS}; a younger one may belong to a signup in progress.
+     */
+    @Override
     public void deleteUserByRowKey(String email) {
-        String rowKey = "user#" + email;
-        client.mutateRow(RowMutation.create("user_profiles", rowKey).deleteRow());
+        String emailKey = EMAIL_INDEX_PREFIX + email;
+        String userKey = readIndexedUserKey(emailKey);
+        if (userKey == null) return;
+
+        Row row = client.readRow("user_profiles", userKey);
+        if (row == null) {
+            long staleBeforeMicros = (System.currentTimeMillis() - RESERVATION_GRACE_MILLIS) * 1000;
+            client.checkAndMutateRow(ConditionalRowMutation.create("user_profiles", emailKey)
+                    .condition(FILTERS.timestamp().range().endOpen(staleBeforeMicros))
+                    .then(Mutation.create().deleteRow()));
+            return;
+        }
+        User user = mapRowToUser(row);
+        client.mutateRow(RowMutation.create("user_profiles", USERNAME_INDEX_PREFIX + user.getUsername()).deleteRow());
+        client.mutateRow(RowMutation.create("user_profiles", userKey).deleteRow());
+        client.mutateRow(RowMutation.create("user_profiles", emailKey).deleteRow());
     }
 
+    @Override
     public Optional<User> findByEmail(String email) {
-        List<User> users = getUsers();
-        return users.stream()
-            .filter(user -> email.equals(user.getEmail()))
-            .findFirst();
+        String userKey = readIndexedUserKey(EMAIL_INDEX_PREFIX + email);
+        if (userKey == null) return Optional.empty();
+
+        Row row = client.readRow("user_profiles", userKey);
+        return row == null ? Optional.empty() : Optional.of(mapRowToUser(row));
     }
-    
+
+    @Override
     public boolean existsByUsername(String username) {
-        return getUsers().stream()
-            .anyMatch(user -> username.equals(user.getUsername()));
+        return indexRowExists(USERNAME_INDEX_PREFIX + username);
     }
-    
+
+    @Override
     public boolean existsByEmail(String email) {
-        return findByEmail(email).isPresent();
+        return indexRowExists(EMAIL_INDEX_PREFIX + email);
+    }
+
+    private String readIndexedUserKey(String indexKey) {
+        Row row = client.readRow("user_profiles", indexKey, FILTERS.limit().cellsPerColumn(1));
+        return row == null ? null : getCellValue(row, "metadata", "user_key");
+    }
+
+    private boolean indexRowExists(String indexKey) {
+        Filter keyOnly = FILTERS.chain()
+                .filter(FILTERS.limit().cellsPerRow(1))
+                .filter(FILTERS.value().strip());
+        return client.readRow("user_profiles", indexKey, keyOnly) != null;
+    }
+
+    /**
+     * One-time backfill of the email/username lookup rows from existing user rows.
+     * Also removes lookup rows whose user row no longer exists. Safe to run repeatedly.
+     *
+     * @return The number of user rows indexed
+     */
+    public int backfillUserIndexes() {
+        int indexed = 0;
+        Set<String> userKeys = new HashSet<>();
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("user_profiles");
+
+        for (Row row : client.readRows(Query.create("user_profiles").prefix(USER_PREFIX))) {
+            String userKey = row.getKey().toStringUtf8();
+            userKeys.add(userKey);
+            String email = getCellValue(row, "personal", "email");
+            String username = getCellValue(row, "personal", "username");
+            if (email != null) {
+                batcher.add(RowMutationEntry.create(EMAIL_INDEX_PREFIX + email).setCell("metadata", "user_key", userKey));
+            }
+            if (username != null) {
+                batcher.add(RowMutationEntry.create(USERNAME_INDEX_PREFIX + username).setCell("metadata", "user_key", userKey));
+            }
+            indexed++;
+        }
+
+        for (String prefix : List.of(EMAIL_INDEX_PREFIX, USERNAME_INDEX_PREFIX)) {
+            for (Row row : client.readRows(Query.create("user_profiles").prefix(prefix))) {
+                String userKey = getCellValue(row, "metadata", "user_key");
+                if (userKey == null || !userKeys.contains(userKey)) {
+                    batcher.add(RowMutationEntry.create(row.getKey()).deleteRow());
+                }
+            }
+        }
+
+        closeBatcher(batcher);
+        return indexed;
+    }
+
+    // Waits for all mutations queued so far, keeping the batcher open
+    private void flushBatcher(Batcher<RowMutationEntry, Void> batcher) {
+        try {
+            batcher.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while flushing bulk mutations", e);
+        }
+    }
+
+    // Flushes and closes a bulk mutation batcher, waiting for all pending writes
+    private void closeBatcher(Batcher<RowMutationEntry, Void> batcher) {
+        try {
+            batcher.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while flushing bulk mutations", e);
+        }
     }
 
     // Helper method to get cell value from a row
@@ -126,117 +413,1318 @@ public class BigtableRepository {
             row.getCells(family, qualifier).get(0).getValue().toStringUtf8();
     }
 
+    @Override
     public Optional<User> findByResetToken(String token) {
-        return getUsers().stream()
-                         .filter(u -> token.equals(u.getResetToken()))
-                         .findFirst();
+        Row index = client.readRow("user_profiles", RESET_TOKEN_PREFIX + token, FILTERS.limit().cellsPerColumn(1));
+        if (index == null) return Optional.empty();
+
+        String userKey = getCellValue(index, "security", "user_key");
+        Row row = userKey == null ? null : client.readRow("user_profiles", userKey);
+        if (row == null) return Optional.empty();
+
+        // The user row is authoritative: a lookup row left behind by a replaced token does not match
+        User user = mapRowToUser(row);
+        return token.equals(user.getResetToken()) ? Optional.of(user) : Optional.empty();
     }
 
     // ---- URL Operations ----
-    public void createShortUrl(ShortUrl url) {
-        RowMutation mutation = RowMutation.create("url_tracking", "url#" + url.getShortCode())
-                .setCell("url_info", "long_url", url.getLongUrl())
-                .setCell("url_info", "creation_date", url.getCreationDate())
-                .setCell("url_info", "expiration_date", url.getExpirationDate())
-                .setCell("url_info", "one_time", String.valueOf(url.isOneTime()))
-                .setCell("url_info", "is_active", String.valueOf(url.isActive()))
-                .setCell("user_info", "user_id", url.getUserId());
-        client.mutateRow(mutation);
+    // url_tracking holds url#<code> rows (cell layout in ShortUrlRowCodec) plus per-user index rows
+    // user#<userId>#<reversed creation millis>#<code>, so a user's links list newest-first.
+    private static final String URL_PREFIX = "url#";
+    private static final String USER_URL_INDEX_PREFIX = "user#";
+
+    // Row holding the shared counter that short code ID ranges are leased from
+    private static final String SHORT_CODE_SEQUENCE_ROW = "sequence#short_code";
+    // One url_info cell per application instance, written with the time of its last heartbeat
+    private static final String INSTANCES_ROW = "instances#app";
+    // announced#<announce millis>#<code> rows journal custom codes before they are created (see ShortCodeFilter)
+    private static final String ANNOUNCED_PREFIX = "announced#";
+    // search#<userId>#<trigram>#<code> rows form a per-user inverted trigram index (layout in SearchTerms)
+    private static final String SEARCH_PREFIX = "search#";
+
+    // expiry#<bucket start millis>#<code> rows index links by the minute their expiration falls in,
+    // so the sweeper only reads buckets that are already over. Links without expiration are not indexed.
+    private static final String EXPIRY_PREFIX = "expiry#";
+    private static final long EXPIRY_BUCKET_MILLIS = 60_000L;
+
+    // url_info:renaming marks a url#<code> row claimed by a rename in progress; claims older than this are ignored
+    private static final String RENAMING_QUALIFIER = "renaming";
+    private static final long RENAME_CLAIM_MILLIS = 60_000L;
+
+    // retired#<code> rows mark codes that a renamed link still records its clicks under. Such a
+    // code is never created again, or the new link would share the renamed link's click history.
+    private static final String RETIRED_PREFIX = "retired#";
+
+    // Projections pushed into url#<code> reads. Every projection returns only the latest
+    // version of each cell; a compact row is fully described by its record cell plus is_active.
+    private static final Filter FULL_URL_ROW = FILTERS.limit().cellsPerColumn(1);
+    // long_url, expiration_date, is_active and one_time drive the redirect; analytics_key says where its click goes
+    private static final Filter REDIRECT_COLUMNS = urlColumns(
+            "long_url", "expiration_date", "is_active", "one_time", ShortUrlRowCodec.ANALYTICS_KEY_QUALIFIER);
+    // Enough to locate the per-user index, search and expiry rows of a link
+    private static final Filter INDEX_COLUMNS = urlColumns("user_id", "creation_date", "long_url", "expiration_date");
+    // Existence checks: one cell per row with its value stripped
+    private static final Filter KEY_ONLY = FILTERS.chain()
+            .filter(FILTERS.limit().cellsPerRow(1))
+            .filter(FILTERS.value().strip());
+    // Entries per bulk mutation request when the row count is not bounded by the caller
+    private static final int MAX_BULK_ENTRIES = 20_000;
+    // Links whose click ranges (every bucket plus legacy) are read in one counter backfill scan
+    private static final int CLICK_BACKFILL_LINKS_PER_SCAN = 100;
+
+    // Condition for flipping a link to inactive: matches only while the row exists and its latest is_active is true
+    private static final Filter STILL_ACTIVE = FILTERS.chain()
+            .filter(FILTERS.family().exactMatch("url_info"))
+            .filter(FILTERS.qualifier().exactMatch("is_active"))
+            .filter(FILTERS.limit().cellsPerColumn(1))
+            .filter(FILTERS.value().exactMatch("true"));
+
+    private static Filter urlColumns(String... qualifiers) {
+        Filters.InterleaveFilter columns = FILTERS.interleave()
+                .filter(FILTERS.qualifier().exactMatch(ShortUrlRowCodec.RECORD_QUALIFIER));
+        for (String qualifier : qualifiers) {
+            columns.filter(FILTERS.qualifier().exactMatch(qualifier));
+        }
+        return FILTERS.chain()
+                .filter(FILTERS.family().regex("url_info|user_info"))
+                .filter(columns)
+                .filter(FILTERS.limit().cellsPerColumn(1));
+    }
+
+    /**
+     * Creates a link only if its short code is not taken yet.
+     * The existence check and the write are one conditional mutation, so concurrent
+     * creates of the same code cannot overwrite each other.
+     *
+     * @return true if the link was created, false if the short code already exists
+     */
+    @Override
+    public boolean createShortUrl(ShortUrl url) {
+        ConditionalRowMutation create = ConditionalRowMutation.create("url_tracking", URL_PREFIX + url.getShortCode())
+                .condition(FILTERS.pass())
+                .otherwise(ShortUrlRowCodec.write(Mutation.create(), url, urlEncoding));
+        boolean alreadyExists = client.checkAndMutateRow(create);
+        if (alreadyExists) return false;
+        if (!retiredCodes(List.of(url)).isEmpty()) {
+            client.mutateRow(RowMutation.create("url_tracking", URL_PREFIX + url.getShortCode()).deleteRow());
+            return false;
+        }
+
+        // Index only links we own, so a lost race never lists someone else's link
+        client.bulkMutateRows(addIndexRows(BulkMutation.create("url_tracking"), url));
+        return true;
+    }
+
+    /**
+     * Creates a batch of links in four round trips regardless of its size:
+     * <ol>
+     * <li>One multi-row read skips custom aliases that are already taken.</li>
+     * <li>The remaining url rows are created with conditional mutations sent concurrently, so
+     * a code taken in the meantime is never overwritten.</li>
+     * <li>One multi-row read finds retired codes among the created links; those rows are deleted again.</li>
+     * <li>One bulk mutation writes the index rows of the links that were created.</li>
+     * </ol>
+     */
+    @Override
+    public List<Boolean> createShortUrls(List<ShortUrl> urls) {
+        List<Boolean> created = new ArrayList<>(Collections.nCopies(urls.size(), Boolean.FALSE));
+        if (urls.isEmpty()) return created;
+
+        Query existing = Query.create("url_tracking").filter(KEY_ONLY);
+        urls.forEach(url -> existing.rowKey(URL_PREFIX + url.getShortCode()));
+        Set<String> taken = new HashSet<>();
+        for (Row row : client.readRows(existing)) {
+            taken.add(row.getKey().toStringUtf8().substring(URL_PREFIX.length()));
+        }
+
+        List<Integer> attempted = new ArrayList<>();
+        List<ApiFuture<Boolean>> pending = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            ShortUrl url = urls.get(i);
+            if (taken.contains(url.getShortCode())) continue;
+            attempted.add(i);
+            pending.add(client.checkAndMutateRowAsync(
+                    ConditionalRowMutation.create("url_tracking", URL_PREFIX + url.getShortCode())
+                            .condition(FILTERS.pass())
+                            .otherwise(ShortUrlRowCodec.write(Mutation.create(), url, urlEncoding))));
+        }
+
+        // Index only links we own, as in createShortUrl
+        List<Boolean> alreadyExisted = awaitAll(pending);
+        List<ShortUrl> written = new ArrayList<>();
+        for (int j = 0; j < attempted.size(); j++) {
+            if (!alreadyExisted.get(j)) written.add(urls.get(attempted.get(j)));
+        }
+        Set<String> retired = retiredCodes(written);
+        BulkMutation indexes = BulkMutation.create("url_tracking");
+        for (int j = 0; j < attempted.size(); j++) {
+            if (alreadyExisted.get(j)) continue;
+            int i = attempted.get(j);
+            if (retired.contains(urls.get(i).getShortCode())) {
+                indexes.add(URL_PREFIX + urls.get(i).getShortCode(), Mutation.create().deleteRow());
+                continue;
+            }
+            created.set(i, Boolean.TRUE);
+            addIndexRows(indexes, urls.get(i));
+            // Long URLs index hundreds of trigrams; stay well below the per-request mutation limit
+            if (indexes.getEntryCount() >= MAX_BULK_ENTRIES) {
+                client.bulkMutateRows(indexes);
+                indexes = BulkMutation.create("url_tracking");
+            }
+        }
+        if (indexes.getEntryCount() > 0) {
+            client.bulkMutateRows(indexes);
+        }
+        return created;
+    }
+
+    // Codes among the links that are retired. Checked after the conditional create: a rename
+    // writes the retired row before deleting the old url row, so a create that got the code
+    // after the rename freed it always sees the retired row here and gives the code back.
+    private Set<String> retiredCodes(List<ShortUrl> urls) {
+        Set<String> retired = new HashSet<>();
+        if (urls.isEmpty()) return retired;
+        Query query = Query.create("url_tracking").filter(KEY_ONLY);
+        urls.forEach(url -> query.rowKey(RETIRED_PREFIX + url.getShortCode()));
+        for (Row row : client.readRows(query)) {
+            retired.add(row.getKey().toStringUtf8().substring(RETIRED_PREFIX.length()));
+        }
+        return retired;
+    }
+
+    @Override
+    public long leaseRange(long size) {
+        Row row = client.readModifyWriteRow(ReadModifyWriteRow.create("url_tracking", SHORT_CODE_SEQUENCE_ROW)
+                .increment("url_info", "next_id", size));
+        long end = readLong(row.getCells("url_info", "next_id").get(0).getValue());
+        return end - size;
+    }
+
+    @Override
+    public long peekSequence() {
+        Row row = client.readRow("url_tracking", SHORT_CODE_SEQUENCE_ROW, FILTERS.limit().cellsPerColumn(1));
+        List<RowCell> cells = row == null ? List.of() : row.getCells("url_info", "next_id");
+        return cells.isEmpty() ? 0L : readLong(cells.get(0).getValue());
+    }
+
+    @Override
+    public int heartbeat(String instanceId, long ttlMillis) {
+        client.mutateRow(RowMutation.create("url_tracking", INSTANCES_ROW)
+                .setCell("url_info", instanceId, ""));
+        Row row = client.readRow("url_tracking", INSTANCES_ROW, FILTERS.limit().cellsPerColumn(1));
+        long liveAfterMicros = (System.currentTimeMillis() - ttlMillis) * 1000;
+        int live = 0;
+        RowMutation stale = RowMutation.create("url_tracking", INSTANCES_ROW);
+        boolean anyStale = false;
+        for (RowCell cell : row == null ? List.<RowCell>of() : row.getCells()) {
+            if (cell.getTimestamp() >= liveAfterMicros) {
+                live++;
+            } else {
+                stale.deleteCells(cell.getFamily(), cell.getQualifier());
+                anyStale = true;
+            }
+        }
+        if (anyStale) {
+            client.mutateRow(stale);
+        }
+        return Math.max(1, live);
+    }
+
+    @Override
+    public void announceShortCodes(Collection<String> shortCodes) {
+        if (shortCodes.isEmpty()) return;
+        String prefix = ANNOUNCED_PREFIX + String.format("%013d", System.currentTimeMillis()) + "#";
+        BulkMutation bulk = BulkMutation.create("url_tracking");
+        for (String shortCode : shortCodes) {
+            bulk.add(prefix + shortCode, Mutation.create().setCell("url_info", "a", ""));
+        }
+        client.bulkMutateRows(bulk);
+    }
+
+    @Override
+    public void forEachAnnouncedShortCode(long sinceMillis, Consumer<String> action) {
+        Query announced = Query.create("url_tracking")
+                .range(ByteStringRange.prefix(ANNOUNCED_PREFIX)
+                        .startClosed(ANNOUNCED_PREFIX + String.format("%013d", Math.max(0L, sinceMillis))))
+                .filter(KEY_ONLY);
+        for (Row row : client.readRows(announced)) {
+            String key = row.getKey().toStringUtf8();
+            action.accept(key.substring(key.indexOf('#', ANNOUNCED_PREFIX.length()) + 1));
+        }
     }
 
+    @Override
+    public void deleteAnnouncementsBefore(long beforeMillis) {
+        Query expired = Query.create("url_tracking")
+                .range(ByteStringRange.unbounded()
+                        .startClosed(ANNOUNCED_PREFIX)
+                        .endOpen(ANNOUNCED_PREFIX + String.format("%013d", Math.max(0L, beforeMillis))))
+                .filter(KEY_ONLY);
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("url_tracking");
+        for (Row row : client.readRows(expired)) {
+            batcher.add(RowMutationEntry.create(row.getKey()).deleteRow());
+        }
+        closeBatcher(batcher);
+    }
+
+    @Override
     public ShortUrl getShortUrl(String shortCode) {
-        Row row = client.readRow("url_tracking", "url#" + shortCode);
+        Row row = client.readRow("url_tracking", URL_PREFIX + shortCode, FULL_URL_ROW);
+        if (row == null) return null;
+
+        return mapRowToShortUrl(row);
+    }
+
+    /**
+     * Reads only the columns the redirect path needs, latest version only.
+     * Fields outside the projection are null in the returned object.
+     *
+     * @param shortCode The short code to resolve
+     * @return The projected link, or null if it does not exist
+     */
+    @Override
+    public ShortUrl getShortUrlForRedirect(String shortCode) {
+        Row row = client.readRow("url_tracking", URL_PREFIX + shortCode, REDIRECT_COLUMNS);
         if (row == null) return null;
 
         return mapRowToShortUrl(row);
     }
 
+    /**
+     * Asynchronous {@link #getShortUrlForRedirect(String)}, hedged when hedged reads are enabled.
+     *
+     * @param shortCode The short code to resolve
+     * @return A future of the projected link, or of null if it does not exist
+     */
+    @Override
+    public CompletableFuture<ShortUrl> getShortUrlForRedirectAsync(String shortCode) {
+        return hedgedReads.read(() -> toCompletableFuture(
+                        client.readRowAsync("url_tracking", URL_PREFIX + shortCode, REDIRECT_COLUMNS)))
+                .thenApply(row -> row == null ? null : mapRowToShortUrl(row));
+    }
+
+    @Override
     public void deleteShortUrl(String shortCode) {
-        client.mutateRow(RowMutation.create("url_tracking", "url#" + shortCode).deleteRow());
+        Row row = client.readRow("url_tracking", URL_PREFIX + shortCode, INDEX_COLUMNS);
+        ShortUrl existing = row == null ? null : mapRowToShortUrl(row);
+        BulkMutation bulk = BulkMutation.create("url_tracking")
+                .add(URL_PREFIX + shortCode, Mutation.create().deleteRow());
+        if (existing != null) {
+            deleteIndexRows(bulk, existing);
+        }
+        client.bulkMutateRows(bulk);
+    }
+
+    /**
+     * Deletes links and their index rows in bulk mutations, without reading the rows first.
+     * Search and expiry rows go first, then the url rows, then the per-user index rows. Until
+     * its per-user row is gone a link is still listed, so a deletion that fails partway can be
+     * run again; a per-user row left without its url row is removed by {@link #deleteIndexRowsOfUser}.
+     */
+    @Override
+    public void deleteShortUrls(List<ShortUrl> urls) {
+        List<String> indexRows = new ArrayList<>();
+        List<String> urlRows = new ArrayList<>(urls.size());
+        List<String> listingRows = new ArrayList<>(urls.size());
+        for (ShortUrl url : urls) {
+            indexRows.addAll(searchIndexKeys(url));
+            String expiryKey = expiryIndexKey(url);
+            if (expiryKey != null) {
+                indexRows.add(expiryKey);
+            }
+            urlRows.add(URL_PREFIX + url.getShortCode());
+            listingRows.add(userUrlIndexKey(url));
+        }
+        deleteUrlTrackingRows(indexRows);
+        deleteUrlTrackingRows(urlRows);
+        deleteUrlTrackingRows(listingRows);
     }
 
+    private void deleteUrlTrackingRows(List<String> rowKeys) {
+        BulkMutation bulk = BulkMutation.create("url_tracking");
+        for (String rowKey : rowKeys) {
+            bulk.add(rowKey, Mutation.create().deleteRow());
+            if (bulk.getEntryCount() >= MAX_BULK_ENTRIES) {
+                client.bulkMutateRows(bulk);
+                bulk = BulkMutation.create("url_tracking");
+            }
+        }
+        if (bulk.getEntryCount() > 0) {
+            client.bulkMutateRows(bulk);
+        }
+    }
+
+    /**
+     * Finds a user's links through the search index and keeps those without a per-user index
+     * row. Meant to run after the listed links were deleted, when the search rows left under
+     * the user belong to unlisted links or to none.
+     */
+    @Override
+    public List<ShortUrl> getUnlistedUrlsByUserId(String userId) {
+        Set<String> shortCodes = new LinkedHashSet<>();
+        for (Row row : client.readRows(Query.create("url_tracking").prefix(SEARCH_PREFIX + userId + "#").filter(KEY_ONLY))) {
+            shortCodes.add(searchKeyShortCode(row));
+        }
+        List<ShortUrl> owned = new ArrayList<>();
+        for (ShortUrl url : getShortUrls(new ArrayList<>(shortCodes))) {
+            if (userId.equals(url.getUserId())) owned.add(url);
+        }
+        if (owned.isEmpty()) return owned;
+
+        Query listed = Query.create("url_tracking").filter(KEY_ONLY);
+        owned.forEach(url -> listed.rowKey(userUrlIndexKey(url)));
+        Set<String> listedKeys = new HashSet<>();
+        for (Row row : client.readRows(listed)) {
+            listedKeys.add(row.getKey().toStringUtf8());
+        }
+        owned.removeIf(url -> listedKeys.contains(userUrlIndexKey(url)));
+        return owned;
+    }
+
+    /**
+     * Deletes every per-user and search index row left under a user, in one multi-range scan
+     * of keys only.
+     */
+    @Override
+    public long deleteIndexRowsOfUser(String userId) {
+        Query keys = Query.create("url_tracking")
+                .prefix(userUrlIndexPrefix(userId))
+                .prefix(SEARCH_PREFIX + userId + "#")
+                .filter(KEY_ONLY);
+        long deleted = 0;
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("url_tracking");
+        try {
+            for (Row row : client.readRows(keys)) {
+                batcher.add(RowMutationEntry.create(row.getKey()).deleteRow());
+                if (++deleted % MAX_BULK_ENTRIES == 0) {
+                    flushBatcher(batcher);
+                }
+            }
+        } finally {
+            closeBatcher(batcher);
+        }
+        return deleted;
+    }
+
+    /**
+     * Renames a link in four round trips, whatever the size of its click history.
+     * <ol>
+     * <li>Read the old row.</li>
+     * <li>Claim the old row with a conditional mutation, so a concurrent rename of the same link fails.</li>
+     * <li>Create the new row with a conditional mutation, so only one rename or create wins the new code.</li>
+     * <li>Delete the old row and move the index rows in one bulk mutation.</li>
+     * </ol>
+     * The click history is not copied: the new row records clicks under the old row's analytics key.
+     * When that key is the old code itself, a retired row is written before the old row is deleted,
+     * so the old code is never given to another link.
+     * A claim left behind by a crashed rename is ignored after {@code RENAME_CLAIM_MILLIS}.
+     *
+     * @return The renamed link
+     * @throws IllegalArgumentException if the old code does not exist, is being renamed, or the new code is taken
+     */
+    @Override
+    public ShortUrl renameShortUrl(String oldCode, String newCode) {
+        Row row = client.readRow("url_tracking", URL_PREFIX + oldCode, FULL_URL_ROW);
+        if (row == null) {
+            throw new IllegalArgumentException("Old short code does not exist.");
+        }
+        ShortUrl existing = mapRowToShortUrl(row);
+
+        long staleBeforeMicros = (System.currentTimeMillis() - RENAME_CLAIM_MILLIS) * 1000;
+        Filter notBeingRenamed = FILTERS.condition(FILTERS.chain()
+                        .filter(FILTERS.family().exactMatch("url_info"))
+                        .filter(FILTERS.qualifier().exactMatch(RENAMING_QUALIFIER))
+                        .filter(FILTERS.timestamp().range().startClosed(staleBeforeMicros)))
+                .then(FILTERS.block())
+                .otherwise(FILTERS.chain()
+                        .filter(FILTERS.family().exactMatch("url_info"))
+                        .filter(FILTERS.qualifier().exactMatch("is_active")));
+        boolean claimed = client.checkAndMutateRow(ConditionalRowMutation.create("url_tracking", URL_PREFIX + oldCode)
+                .condition(notBeingRenamed)
+                .then(Mutation.create().setCell("url_info", RENAMING_QUALIFIER, newCode)));
+        if (!claimed) {
+            throw new IllegalArgumentException("Old short code does not exist or is already being renamed.");
+        }
+
+        ShortUrl renamed = new ShortUrl(newCode, existing.getLongUrl(), existing.getUserId(), existing.getCreationDate(),
+                existing.getExpirationDate(), existing.isOneTime(), existing.isActive(), newCode);
+        renamed.setAnalyticsKey(existing.getAnalyticsKey());
+        boolean taken = client.checkAndMutateRow(ConditionalRowMutation.create("url_tracking", URL_PREFIX + newCode)
+                .condition(FILTERS.pass())
+                .otherwise(ShortUrlRowCodec.write(Mutation.create(), renamed, urlEncoding)));
+        if (taken) {
+            client.mutateRow(RowMutation.create("url_tracking", URL_PREFIX + oldCode)
+                    .deleteCells("url_info", RENAMING_QUALIFIER));
+            throw new IllegalArgumentException("The new short code is already in use.");
+        }
+
+        if (existing.getAnalyticsKey().equals(oldCode)) {
+            client.mutateRow(RowMutation.create("url_tracking", RETIRED_PREFIX + oldCode)
+                    .setCell("url_info", "renamed_to", newCode));
+        }
+        BulkMutation move = BulkMutation.create("url_tracking")
+                .add(URL_PREFIX + oldCode, Mutation.create().deleteRow());
+        client.bulkMutateRows(addIndexRows(deleteIndexRows(move, existing), renamed));
+        return renamed;
+    }
+
+    // Per-user listing, search and expiry rows of a link
+    private static BulkMutation addIndexRows(BulkMutation bulk, ShortUrl url) {
+        bulk.add(userUrlIndexKey(url), Mutation.create().setCell("user_info", "short_code", url.getShortCode()));
+        for (String key : searchIndexKeys(url)) {
+            bulk.add(key, Mutation.create().setCell("user_info", "s", ""));
+        }
+        String expiryKey = expiryIndexKey(url);
+        if (expiryKey != null) {
+            bulk.add(expiryKey, Mutation.create().setCell("url_info", "e", ""));
+        }
+        return bulk;
+    }
+
+    private static BulkMutation deleteIndexRows(BulkMutation bulk, ShortUrl url) {
+        bulk.add(userUrlIndexKey(url), Mutation.create().deleteRow());
+        for (String key : searchIndexKeys(url)) {
+            bulk.add(key, Mutation.create().deleteRow());
+        }
+        String expiryKey = expiryIndexKey(url);
+        if (expiryKey != null) {
+            bulk.add(expiryKey, Mutation.create().deleteRow());
+        }
+        return bulk;
+    }
+
+    @Override
     public List<ShortUrl> getAllUrlsByUserId(String userId) {
-        List<ShortUrl> shortUrls = new ArrayList<>();
+        List<String> shortCodes = new ArrayList<>();
+        client.readRows(Query.create("url_tracking").prefix(userUrlIndexPrefix(userId)))
+                .forEach(row -> shortCodes.add(getCellValue(row, "user_info", "short_code")));
+        return getShortUrls(shortCodes);
+    }
 
-        client.readRows(Query.create("url_tracking")).forEach(row -> {
-            ShortUrl shortUrl = mapRowToShortUrl(row);
-            if (shortUrl.getUserId().equals(userId)) {
-                shortUrls.add(shortUrl);
+    /**
+     * Reads one page of a user's links, newest first, using only the per-user index range.
+     *
+     * @param userId The owner of the links
+     * @param limit The maximum number of links to return
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @return The page of links and the cursor for the next page
+     */
+    @Override
+    public CursorPage<ShortUrl> getUrlsByUserIdPage(String userId, int limit, String cursor) {
+        String prefix = userUrlIndexPrefix(userId);
+        ByteStringRange range = ByteStringRange.prefix(prefix);
+        if (cursor != null && !cursor.isEmpty()) {
+            String lastKey = decodeCursor(cursor);
+            if (!lastKey.startsWith(prefix)) {
+                throw new IllegalArgumentException("Cursor does not belong to this user.");
             }
-        });
+            range.startOpen(lastKey);
+        }
+
+        List<String> shortCodes = new ArrayList<>();
+        String lastKey = null;
+        boolean hasMore = false;
+        // Read one extra row to learn whether another page exists
+        for (Row row : client.readRows(Query.create("url_tracking").range(range).limit(limit + 1L))) {
+            if (shortCodes.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            shortCodes.add(getCellValue(row, "user_info", "short_code"));
+            lastKey = row.getKey().toStringUtf8();
+        }
+
+        String nextCursor = hasMore ? encodeCursor(lastKey) : null;
+        return new CursorPage<>(getShortUrls(shortCodes), nextCursor);
+    }
 
-        return shortUrls;
+    /**
+     * Reads several links in one request.
+     *
+     * @param shortCodes The codes to read
+     * @return The links that exist, in the order of the given codes
+     */
+    @Override
+    public List<ShortUrl> getShortUrls(List<String> shortCodes) {
+        if (shortCodes.isEmpty()) return new ArrayList<>();
+
+        Query query = Query.create("url_tracking").filter(FULL_URL_ROW);
+        shortCodes.forEach(code -> query.rowKey(URL_PREFIX + code));
+
+        Map<String, ShortUrl> byCode = new HashMap<>();
+        for (Row row : client.readRows(query)) {
+            ShortUrl url = mapRowToShortUrl(row);
+            byCode.put(url.getShortCode(), url);
+        }
+
+        List<ShortUrl> ordered = new ArrayList<>(shortCodes.size());
+        for (String code : shortCodes) {
+            ShortUrl url = byCode.get(code);
+            if (url != null) {
+                ordered.add(url);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * One-time backfill of the per-user index rows from existing url#<code> rows.
+     * Safe to run repeatedly.
+     *
+     * @return The number of links indexed
+     */
+    public int backfillUserUrlIndex() {
+        int indexed = 0;
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("url_tracking");
+        for (Row row : client.readRows(Query.create("url_tracking").prefix(URL_PREFIX))) {
+            ShortUrl url = mapRowToShortUrl(row);
+            batcher.add(RowMutationEntry.create(userUrlIndexKey(url))
+                    .setCell("user_info", "short_code", url.getShortCode()));
+            indexed++;
+        }
+        closeBatcher(batcher);
+        return indexed;
+    }
+
+    /**
+     * Finds the short codes of a user's links that may contain a query.
+     * Queries of three or more characters intersect the posting lists of their trigrams;
+     * shorter ones scan all trigrams starting with the query. Posting lists are read up to
+     * {@code maxPerTerm} keys; a truncated list is not used to narrow the candidates.
+     * Candidates still have to be checked against the link text.
+     *
+     * @param userId The owner of the links
+     * @param query The normalized text to look for
+     * @param maxPerTerm Maximum index rows read per trigram
+     * @return Candidate short codes
+     */
+    @Override
+    public Set<String> findSearchCandidates(String userId, String query, int maxPerTerm) {
+        if (query.isEmpty()) return Collections.emptySet();
+        String userPrefix = SEARCH_PREFIX + userId + "#";
+
+        if (query.length() < 3) {
+            Set<String> codes = new LinkedHashSet<>();
+            Query scan = Query.create("url_tracking").prefix(userPrefix + query).filter(KEY_ONLY).limit(maxPerTerm);
+            for (Row row : client.readRows(scan)) {
+                codes.add(searchKeyShortCode(row));
+            }
+            return codes;
+        }
+
+        Set<String> candidates = null;
+        Set<String> fallback = null;
+        for (String trigram : SearchTerms.queryTrigrams(query)) {
+            Set<String> postings = new LinkedHashSet<>();
+            Query scan = Query.create("url_tracking").prefix(userPrefix + trigram + "#").filter(KEY_ONLY).limit(maxPerTerm);
+            for (Row row : client.readRows(scan)) {
+                postings.add(searchKeyShortCode(row));
+            }
+            if (postings.size() >= maxPerTerm) {
+                // Too common to be selective
+                if (fallback == null) fallback = postings;
+                continue;
+            }
+            if (candidates == null) {
+                candidates = postings;
+            } else {
+                candidates.retainAll(postings);
+            }
+            if (candidates.isEmpty()) break;
+        }
+        return candidates != null ? candidates : fallback;
+    }
+
+    /**
+     * Builds the search index rows for all existing links. Safe to run repeatedly.
+     *
+     * @return The number of links indexed
+     */
+    public int backfillSearchIndex() {
+        int indexed = 0;
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("url_tracking");
+        for (Row row : client.readRows(Query.create("url_tracking").prefix(URL_PREFIX).filter(FULL_URL_ROW))) {
+            for (String key : searchIndexKeys(mapRowToShortUrl(row))) {
+                batcher.add(RowMutationEntry.create(key).setCell("user_info", "s", ""));
+            }
+            indexed++;
+        }
+        closeBatcher(batcher);
+        return indexed;
+    }
+
+    private static List<String> searchIndexKeys(ShortUrl url) {
+        List<String> keys = new ArrayList<>();
+        for (String trigram : SearchTerms.indexTrigrams(url)) {
+            keys.add(SEARCH_PREFIX + url.getUserId() + "#" + trigram + "#" + url.getShortCode());
+        }
+        return keys;
+    }
+
+    private static String searchKeyShortCode(Row row) {
+        String key = row.getKey().toStringUtf8();
+        return key.substring(key.lastIndexOf('#') + 1);
+    }
+
+    private static String userUrlIndexPrefix(String userId) {
+        return USER_URL_INDEX_PREFIX + userId + "#";
+    }
+
+    private static String userUrlIndexKey(ShortUrl url) {
+        long reversed = Long.MAX_VALUE - url.getCreationMillis();
+        return userUrlIndexPrefix(url.getUserId()) + String.format("%019d", reversed) + "#" + url.getShortCode();
+    }
+
+    private static String encodeCursor(String rowKey) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(rowKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor.", e);
+        }
+    }
+
+    // Streams every short code using row keys only, without transferring cell values
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        for (Row row : client.readRows(Query.create("url_tracking").prefix(URL_PREFIX).filter(KEY_ONLY))) {
+            action.accept(row.getKey().toStringUtf8().substring(URL_PREFIX.length()));
+        }
+    }
+
+    @Override
+    public void forEachShortUrl(Consumer<ShortUrl> action) {
+        for (Row row : client.readRows(Query.create("url_tracking").prefix(URL_PREFIX).filter(REDIRECT_COLUMNS))) {
+            action.accept(mapRowToShortUrl(row));
+        }
     }
 
+    /**
+     * Consumes a one-time link: the check of is_active and the write of is_active=false are one
+     * conditional mutation evaluated by Bigtable, so concurrent redirects on any number of
+     * instances see exactly one success.
+     */
+    @Override
+    public boolean consumeOneTimeLink(String shortCode) {
+        return client.checkAndMutateRow(ConditionalRowMutation.create("url_tracking", URL_PREFIX + shortCode)
+                .condition(STILL_ACTIVE)
+                .then(Mutation.create().setCell("url_info", "is_active", "false")));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> consumeOneTimeLinkAsync(String shortCode) {
+        return toCompletableFuture(client.checkAndMutateRowAsync(
+                ConditionalRowMutation.create("url_tracking", URL_PREFIX + shortCode)
+                        .condition(STILL_ACTIVE)
+                        .then(Mutation.create().setCell("url_info", "is_active", "false"))));
+    }
+
+    @Override
     public boolean existsByShortCode(String shortCode) {
-        Row row = client.readRow("url_tracking", "url#" + shortCode);
-        return (row != null);
+        Query query = Query.create("url_tracking")
+                .rowKey(URL_PREFIX + shortCode)
+                .rowKey(RETIRED_PREFIX + shortCode)
+                .filter(KEY_ONLY)
+                .limit(1);
+        return client.readRows(query).iterator().hasNext();
     }
 
-    // Helper method to map Bigtable row to ShortUrl object
+    // Helper method to map Bigtable row to ShortUrl object (either cell layout)
     private ShortUrl mapRowToShortUrl(Row row) {
-        String shortCode = row.getKey().toStringUtf8().split("#")[1];
+        return ShortUrlRowCodec.decode(row);
+    }
+
+    /**
+     * Rewrites legacy url#<code> rows into the compact single-cell layout.
+     * Each row is rewritten with a conditional mutation that only applies while the legacy
+     * cells are still present, so links deleted or already migrated concurrently are left alone.
+     * Safe to run repeatedly.
+     *
+     * @param chunkSize How many conditional writes to keep in flight
+     * @return The number of rows migrated
+     */
+    public long migrateShortUrlEncoding(int chunkSize) {
+        Filter stillLegacy = FILTERS.chain()
+                .filter(FILTERS.family().exactMatch("url_info"))
+                .filter(FILTERS.qualifier().exactMatch("long_url"));
+        long migrated = 0;
+        List<ApiFuture<Boolean>> pending = new ArrayList<>(chunkSize);
+        Query query = Query.create("url_tracking").prefix(URL_PREFIX).filter(FILTERS.limit().cellsPerColumn(1));
+        for (Row row : client.readRows(query)) {
+            if (ShortUrlRowCodec.isCompact(row)) continue;
+            ByteString record = ShortUrlRowCodec.encode(mapRowToShortUrl(row));
+            if (record == null) continue;
+
+            Mutation rewrite = Mutation.create()
+                    .setCell("url_info", ByteString.copyFromUtf8(ShortUrlRowCodec.RECORD_QUALIFIER), record);
+            for (String[] column : ShortUrlRowCodec.LEGACY_COLUMNS) {
+                rewrite.deleteCells(column[0], column[1]);
+            }
+            pending.add(client.checkAndMutateRowAsync(ConditionalRowMutation.create("url_tracking", row.getKey())
+                    .condition(stillLegacy)
+                    .then(rewrite)));
+
+            if (pending.size() >= chunkSize) {
+                migrated += countApplied(pending);
+            }
+        }
+        return migrated + countApplied(pending);
+    }
+
+    private static int countApplied(List<ApiFuture<Boolean>> pending) {
+        int applied = 0;
+        for (Boolean matched : awaitAll(pending)) {
+            if (matched) applied++;
+        }
+        pending.clear();
+        return applied;
+    }
 
-        String longUrl = row.getCells("url_info", "long_url").get(0).getValue().toStringUtf8();
-        String userId = row.getCells("user_info", "user_id").get(0).getValue().toStringUtf8();
-        String creationDate = row.getCells("url_info", "creation_date").get(0).getValue().toStringUtf8();
-        String expirationDate = row.getCells("url_info", "expiration_date").get(0).getValue().toStringUtf8();
-        boolean oneTime = Boolean.parseBoolean(row.getCells("url_info", "one_time").get(0).getValue().toStringUtf8());
-        boolean isActive = Boolean.parseBoolean(row.getCells("url_info", "is_active").get(0).getValue().toStringUtf8());
+    /**
+     * Deactivates expired links using the expiry index. Each link is flipped with a conditional
+     * mutation that only applies while the row exists and is active, so deleted links are not
+     * recreated and links deactivated elsewhere are not reported twice.
+     */
+    @Override
+    public List<String> deactivateExpired(long nowMillis, int limit) {
+        Query due = Query.create("url_tracking")
+                .range(ByteStringRange.unbounded()
+                        .startClosed(EXPIRY_PREFIX)
+                        .endOpen(EXPIRY_PREFIX + String.format("%013d", expiryBucket(nowMillis))))
+                .filter(KEY_ONLY)
+                .limit(limit);
+        List<String> codes = new ArrayList<>();
+        List<ApiFuture<Boolean>> pending = new ArrayList<>();
+        BulkMutation processed = BulkMutation.create("url_tracking");
+        for (Row row : client.readRows(due)) {
+            String key = row.getKey().toStringUtf8();
+            String shortCode = key.substring(key.lastIndexOf('#') + 1);
+            codes.add(shortCode);
+            pending.add(client.checkAndMutateRowAsync(ConditionalRowMutation.create("url_tracking", URL_PREFIX + shortCode)
+                    .condition(STILL_ACTIVE)
+                    .then(Mutation.create().setCell("url_info", "is_active", "false"))));
+            processed.add(row.getKey(), Mutation.create().deleteRow());
+        }
+        if (codes.isEmpty()) return codes;
+
+        List<Boolean> matched = awaitAll(pending);
+        List<String> deactivated = new ArrayList<>();
+        for (int i = 0; i < codes.size(); i++) {
+            if (matched.get(i)) deactivated.add(codes.get(i));
+        }
+        // Index rows go only after the flips, so a failed sweep is retried on the next run
+        client.bulkMutateRows(processed);
+        return deactivated;
+    }
+
+    /**
+     * Builds the expiry index rows for all existing links. Safe to run repeatedly.
+     *
+     * @return The number of links indexed
+     */
+    public int backfillExpiryIndex() {
+        int indexed = 0;
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("url_tracking");
+        for (Row row : client.readRows(Query.create("url_tracking").prefix(URL_PREFIX).filter(REDIRECT_COLUMNS))) {
+            String key = expiryIndexKey(mapRowToShortUrl(row));
+            if (key != null) {
+                batcher.add(RowMutationEntry.create(key).setCell("url_info", "e", ""));
+                indexed++;
+            }
+        }
+        closeBatcher(batcher);
+        return indexed;
+    }
+
+    // Null for links that never expire
+    private static String expiryIndexKey(ShortUrl url) {
+        if (url.getExpirationMillis() == Long.MAX_VALUE) return null;
+        return EXPIRY_PREFIX + String.format("%013d", expiryBucket(url.getExpirationMillis())) + "#" + url.getShortCode();
+    }
 
-        return new ShortUrl(shortCode, longUrl, userId, creationDate, expirationDate, oneTime, isActive, shortCode);
+    private static long expiryBucket(long millis) {
+        long clamped = Math.max(0L, millis);
+        return clamped - clamped % EXPIRY_BUCKET_MILLIS;
     }
 
     // ---- URL Analytics ----
+    // url_analytics holds click rows (key layout in ClickRowKeys), one count#<code> row per link
+    // whose click_info:total cell is a 64-bit counter updated with ReadModifyWriteRow, and rollup rows.
+    private static final String CLICK_COUNTER_PREFIX = "count#";
+    private static final String CLICK_COUNTER_QUALIFIER = "total";
+    // Historical clicks written once by backfillClickCounters, in the same conditional mutation that
+    // sets the click_info:backfilled marker; a link's count is total + backfilled_count
+    private static final String CLICK_BACKFILLED_QUALIFIER = "backfilled_count";
+    // rollup#<code>#<m|h|d>#<bucket start millis> rows hold 64-bit counters for one time bucket:
+    // click_info:count plus one ref:/ua:/geo: column per referrer host, browser and location
+    private static final String ROLLUP_PREFIX = "rollup#";
+    private static final String ROLLUP_COUNT = "count";
+    private static final String ROLLUP_REFERRER = "ref:";
+    private static final String ROLLUP_USER_AGENT = "ua:";
+    private static final String ROLLUP_GEO = "geo:";
+
+    // Returns every click of a link, newest first, merged across all key buckets
+    @Override
     public List<Map<String, String>> getClickDetails(String shortCode) {
         List<Map<String, String>> clickRecords = new ArrayList<>();
 
-        client.readRows(Query.create("url_analytics").prefix("click#" + shortCode + "#"))
-                .forEach(row -> {
-                    Map<String, String> record = new HashMap<>();
-                    record.put("timestamp", row.getKey().toStringUtf8().split("#")[2]);
-                    record.put("ip_address", getCellValue(row, "click_info", "ip_address"));
-                    record.put("referrer", getCellValue(row, "click_info", "referrer"));
-                    record.put("userAgent", getCellValue(row, "click_info", "userAgent"));
-                    record.put("geo_location", getCellValue(row, "click_info", "geo_location"));
-                    clickRecords.add(record);
-                });
+        try (MergingRowIterator clicks = openBucketedClicks(shortCode, Query.create("url_analytics"))) {
+            clicks.forEachRemaining(row -> clickRecords.add(toClickRecord(row)));
+        }
+
+        if (clickRowKeys.readsLegacy()) {
+            // Legacy rows are stored oldest first and predate all bucketed rows
+            List<Map<String, String>> legacy = new ArrayList<>();
+            client.readRows(Query.create("url_analytics").prefix(clickRowKeys.legacyPrefix(shortCode)))
+                    .forEach(row -> legacy.add(toClickRecord(row)));
+            Collections.reverse(legacy);
+            clickRecords.addAll(legacy);
+        }
 
         return clickRecords;
     }
 
-    public void recordClick(String shortCode, String ipAddress, String referrer, String geoLocation, String userAgent) {
-        String timestamp = LocalDateTime.now().toString();
-        String rowKey = "click#" + shortCode + "#" + timestamp;
+    /**
+     * Opens a lazy stream over the clicks of a link, with the time range, the selected
+     * columns and the page size pushed down into the Bigtable queries.
+     *
+     * @param shortCode The link to read
+     * @param fromMillis Oldest click to include (inclusive), or 0 for no lower bound
+     * @param toMillis Newest click to include (inclusive), or Long.MAX_VALUE for no upper bound
+     * @param fields The record fields to return, a subset of {@link ClickDetailsStream#FIELDS}
+     * @param cursor A cursor from a previous stream to resume after, or null
+     * @param limit Maximum rows to fetch per underlying range, or 0 for no limit
+     * @return The stream; the caller must close it
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another link
+     */
+    @Override
+    public ClickDetailsStream openClickDetails(String shortCode, long fromMillis, long toMillis,
+                                               Set<String> fields, String cursor, int limit) {
+        String after = cursor == null || cursor.isEmpty() ? null : BigtableClickDetailsStream.decodeCursor(cursor);
+        if (after != null && !clickRowKeys.isClickKeyOf(shortCode, after)) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+        boolean resumeInLegacy = after != null && after.startsWith(ClickRowKeys.LEGACY_PREFIX);
+
+        Query template = Query.create("url_analytics").filter(clickDetailsFilter(fields));
+        if (limit > 0) {
+            template.limit(limit);
+        }
 
-        RowMutation mutation = RowMutation.create("url_analytics", rowKey)
-                .setCell("click_info", "click_count", "1")
-                .setCell("click_info", "ip_address", ipAddress)
-                .setCell("click_info", "referrer", referrer != null ? referrer : "")
-                .setCell("click_info", "geo_location", geoLocation)
-                .setCell("click_info", "userAgent", userAgent != null ? userAgent : "");
+        MergingRowIterator bucketed = null;
+        if (!resumeInLegacy) {
+            List<ServerStream<Row>> streams = new ArrayList<>(clickRowKeys.buckets());
+            for (String prefix : clickRowKeys.bucketPrefixes(shortCode)) {
+                // Bucketed keys run newest first, so the upper time bound is the range start
+                ByteStringRange range = ByteStringRange.prefix(prefix);
+                if (toMillis < Long.MAX_VALUE) {
+                    range.startClosed(prefix + ClickRowKeys.reversedTimestamp(toMillis));
+                }
+                if (after != null) {
+                    String resume = prefix + ClickRowKeys.sortKey(after);
+                    if (resume.compareTo(range.getStart().toStringUtf8()) >= 0) {
+                        range.startOpen(resume);
+                    }
+                }
+                if (fromMillis > 0) {
+                    range.endOpen(prefix + ClickRowKeys.reversedTimestamp(fromMillis - 1));
+                }
+                streams.add(client.readRows(template.clone().range(range)));
+            }
+            bucketed = new MergingRowIterator(streams, ClickRowKeys::sortKey);
+        }
 
-        client.mutateRow(mutation);
+        Supplier<ServerStream<Row>> legacy = null;
+        if (clickRowKeys.readsLegacy()) {
+            String prefix = clickRowKeys.legacyPrefix(shortCode);
+            legacy = () -> {
+                ByteStringRange range = ByteStringRange.prefix(prefix);
+                if (fromMillis > 0) {
+                    range.startClosed(prefix + ClickRowKeys.legacyTimestamp(fromMillis));
+                }
+                if (resumeInLegacy && after.compareTo(range.getStart().toStringUtf8()) >= 0) {
+                    range.startOpen(after);
+                }
+                if (toMillis < Long.MAX_VALUE) {
+                    range.endOpen(prefix + ClickRowKeys.legacyTimestamp(toMillis + 1));
+                }
+                return client.readRows(template.clone().range(range));
+            };
+        }
+        return new BigtableClickDetailsStream(bucketed, legacy, fields);
     }
 
-    public List<ShortUrl> searchShortUrls(String query) {
-        List<ShortUrl> matches = new ArrayList<>();
-        client.readRows(Query.create("url_tracking")).forEach(row -> {
-            ShortUrl url = mapRowToShortUrl(row);
-    
-            if (url.getShortCode().contains(query) ||
-                url.getCustomAlias().contains(query) ||
-                url.getLongUrl().contains(query)) {
-                matches.add(url);
+    // Transfers only the requested click_info columns (latest version); keys only if no column is needed
+    private static Filter clickDetailsFilter(Set<String> fields) {
+        Filters.InterleaveFilter columns = FILTERS.interleave();
+        int selected = 0;
+        for (String field : fields) {
+            if (!field.equals("timestamp")) {
+                columns.filter(FILTERS.qualifier().exactMatch(field));
+                selected++;
+            }
+        }
+        if (selected == 0) {
+            return FILTERS.chain().filter(FILTERS.limit().cellsPerRow(1)).filter(FILTERS.value().strip());
+        }
+        return FILTERS.chain()
+                .filter(FILTERS.family().exactMatch("click_info"))
+                .filter(columns)
+                .filter(FILTERS.limit().cellsPerColumn(1));
+    }
+
+    // Opens one stream per key bucket (sharing the template's filter) and merges them newest first
+    private MergingRowIterator openBucketedClicks(String shortCode, Query template) {
+        List<ServerStream<Row>> streams = new ArrayList<>(clickRowKeys.buckets());
+        for (String prefix : clickRowKeys.bucketPrefixes(shortCode)) {
+            streams.add(client.readRows(template.clone().prefix(prefix)));
+        }
+        return new MergingRowIterator(streams, ClickRowKeys::sortKey);
+    }
+
+    private Map<String, String> toClickRecord(Row row) {
+        Map<String, String> record = new HashMap<>();
+        record.put("timestamp", ClickRowKeys.timestampString(row.getKey().toStringUtf8()));
+        record.put("ip_address", getCellValue(row, "click_info", "ip_address"));
+        record.put("referrer", getCellValue(row, "click_info", "referrer"));
+        record.put("userAgent", getCellValue(row, "click_info", "userAgent"));
+        record.put("geo_location", getCellValue(row, "click_info", "geo_location"));
+        return record;
+    }
+
+    // Writes a batch of clicks in a single bulk mutation and bumps the per-link counters
+    @Override
+    public void recordClicks(List<ClickEvent> events) {
+        if (events.isEmpty()) return;
+
+        BulkMutation bulk = BulkMutation.create("url_analytics");
+        for (ClickEvent event : events) {
+            String rowKey = clickRowKeys.newRowKey(event.getShortCode(), event.getTimestampMillis());
+
+            bulk.add(RowMutationEntry.create(rowKey)
+                    .setCell("click_info", "click_count", "1")
+                    .setCell("click_info", "ip_address", event.getIpAddress())
+                    .setCell("click_info", "referrer", event.getReferrer() != null ? event.getReferrer() : "")
+                    .setCell("click_info", "geo_location", event.getGeoLocation())
+                    .setCell("click_info", "userAgent", event.getUserAgent() != null ? event.getUserAgent() : ""));
+        }
+
+        client.bulkMutateRows(bulk);
+
+        // Aggregate the batch into per-row counter deltas: link totals plus minute/hour/day rollups
+        Map<String, Map<String, Long>> increments = new HashMap<>();
+        for (ClickEvent event : events) {
+            addIncrement(increments, CLICK_COUNTER_PREFIX + event.getShortCode(), CLICK_COUNTER_QUALIFIER);
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                String rowKey = rollupRowKey(event.getShortCode(), granularity, granularity.bucketStart(event.getTimestampMillis()));
+                addIncrement(increments, rowKey, ROLLUP_COUNT);
+                addIncrement(increments, rowKey, ROLLUP_REFERRER + ClickDimensions.referrer(event.getReferrer()));
+                addIncrement(increments, rowKey, ROLLUP_USER_AGENT + ClickDimensions.userAgent(event.getUserAgent()));
+                addIncrement(increments, rowKey, ROLLUP_GEO + ClickDimensions.geo(event.getGeoLocation()));
             }
+        }
+        incrementCounters(increments);
+    }
+
+    private static void addIncrement(Map<String, Map<String, Long>> increments, String rowKey, String qualifier) {
+        increments.computeIfAbsent(rowKey, k -> new HashMap<>()).merge(qualifier, 1L, Long::sum);
+    }
+
+    // One ReadModifyWriteRow per distinct counter row in the batch, issued concurrently
+    private void incrementCounters(Map<String, Map<String, Long>> increments) {
+        List<ApiFuture<Row>> futures = new ArrayList<>(increments.size());
+        increments.forEach((rowKey, deltas) -> {
+            ReadModifyWriteRow rmw = ReadModifyWriteRow.create("url_analytics", rowKey);
+            deltas.forEach((qualifier, delta) -> rmw.increment("click_info", qualifier, delta));
+            futures.add(client.readModifyWriteRowAsync(rmw));
         });
-        return matches;
+        awaitAll(futures);
+    }
+
+    /**
+     * Deletes the click rows of links in every key layout, their rollup rows and counters.
+     * All key prefixes are read as one multi-range scan of keys only, and the batcher is
+     * flushed every {@code MAX_BULK_ENTRIES} rows so pending deletes stay bounded.
+     */
+    @Override
+    public long deleteClickData(Collection<String> shortCodes) {
+        if (shortCodes.isEmpty()) return 0;
+        Query keys = Query.create("url_analytics").filter(KEY_ONLY);
+        for (String shortCode : shortCodes) {
+            clickRowKeys.bucketPrefixes(shortCode).forEach(keys::prefix);
+            keys.prefix(clickRowKeys.legacyPrefix(shortCode));
+            keys.prefix(ROLLUP_PREFIX + shortCode + "#");
+        }
+
+        long deleted = 0;
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("url_analytics");
+        try {
+            for (Row row : client.readRows(keys)) {
+                batcher.add(RowMutationEntry.create(row.getKey()).deleteRow());
+                if (++deleted % MAX_BULK_ENTRIES == 0) {
+                    flushBatcher(batcher);
+                }
+            }
+            for (String shortCode : shortCodes) {
+                batcher.add(RowMutationEntry.create(CLICK_COUNTER_PREFIX + shortCode).deleteRow());
+            }
+        } finally {
+            closeBatcher(batcher);
+        }
+        return deleted;
+    }
+
+    /**
+     * Reads the rollup rows of a link for one granularity within a time range.
+     *
+     * @param shortCode The link to read
+     * @param granularity The bucket size
+     * @param fromMillis Start of the range (inclusive), epoch milliseconds
+     * @param toMillis End of the range (inclusive), epoch milliseconds
+     * @return One point per non-empty bucket, oldest first, with all dimension counters
+     */
+    @Override
+    public List<ClickTimeSeries.Point> getClickRollups(String shortCode, RollupGranularity granularity, long fromMillis, long toMillis) {
+        ByteStringRange range = ByteStringRange.unbounded()
+                .startClosed(rollupRowKey(shortCode, granularity, granularity.bucketStart(fromMillis)))
+                .endClosed(rollupRowKey(shortCode, granularity, granularity.bucketStart(toMillis)));
+
+        List<ClickTimeSeries.Point> points = new ArrayList<>();
+        for (Row row : client.readRows(Query.create("url_analytics").range(range))) {
+            String rowKey = row.getKey().toStringUtf8();
+            long bucketStart = Long.parseLong(rowKey.substring(rowKey.lastIndexOf('#') + 1));
+            long clicks = 0;
+            Map<String, Long> referrers = new HashMap<>();
+            Map<String, Long> userAgents = new HashMap<>();
+            Map<String, Long> geoLocations = new HashMap<>();
+            for (RowCell cell : row.getCells("click_info")) {
+                String qualifier = cell.getQualifier().toStringUtf8();
+                long value = readLong(cell.getValue());
+                if (qualifier.equals(ROLLUP_COUNT)) {
+                    clicks = value;
+                } else if (qualifier.startsWith(ROLLUP_REFERRER)) {
+                    referrers.put(qualifier.substring(ROLLUP_REFERRER.length()), value);
+                } else if (qualifier.startsWith(ROLLUP_USER_AGENT)) {
+                    userAgents.put(qualifier.substring(ROLLUP_USER_AGENT.length()), value);
+                } else if (qualifier.startsWith(ROLLUP_GEO)) {
+                    geoLocations.put(qualifier.substring(ROLLUP_GEO.length()), value);
+                }
+            }
+            points.add(new ClickTimeSeries.Point(bucketStart, clicks, referrers, userAgents, geoLocations));
+        }
+        return points;
+    }
+
+    private static String rollupRowKey(String shortCode, RollupGranularity granularity, long bucketStart) {
+        return ROLLUP_PREFIX + shortCode + "#" + granularity.getKeyPart() + "#" + String.format("%013d", bucketStart);
+    }
+
+    // Completes on the gRPC thread that delivers the response; callers chain only non-blocking work
+    private static <T> CompletableFuture<T> toCompletableFuture(ApiFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                result.complete(value);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    private static <T> List<T> awaitAll(List<ApiFuture<T>> futures) {
+        try {
+            return ApiFutures.allAsList(futures).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for Bigtable", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new IllegalStateException(cause);
+        }
+    }
+
+    // Reads the persistent counter cell maintained by recordClicks
+    @Override
+    public long getClickCount(String shortCode) {
+        Row row = client.readRow("url_analytics", CLICK_COUNTER_PREFIX + shortCode, clickCounterFilter());
+        return row == null ? 0L : readCounter(row);
+    }
+
+    /**
+     * Reads the click counters of many links with a single multi-row read.
+     * Links that have never been clicked map to zero.
+     *
+     * @param shortCodes The links to read counters for
+     * @return Click count per short code
+     */
+    @Override
+    public Map<String, Long> getClickCounts(Collection<String> shortCodes) {
+        Map<String, Long> counts = new HashMap<>();
+        if (shortCodes.isEmpty()) return counts;
+
+        Query query = Query.create("url_analytics").filter(clickCounterFilter());
+        for (String code : shortCodes) {
+            query.rowKey(CLICK_COUNTER_PREFIX + code);
+            counts.put(code, 0L);
+        }
+        for (Row row : client.readRows(query)) {
+            String code = row.getKey().toStringUtf8().substring(CLICK_COUNTER_PREFIX.length());
+            counts.put(code, readCounter(row));
+        }
+        return counts;
+    }
+
+    private static Filter clickCounterFilter() {
+        return FILTERS.chain()
+                .filter(FILTERS.family().exactMatch("click_info"))
+                .filter(FILTERS.interleave()
+                        .filter(FILTERS.qualifier().exactMatch(CLICK_COUNTER_QUALIFIER))
+                        .filter(FILTERS.qualifier().exactMatch(CLICK_BACKFILLED_QUALIFIER)))
+                .filter(FILTERS.limit().cellsPerColumn(1));
+    }
+
+    private static long readCounter(Row row) {
+        return readCounterCell(row, CLICK_COUNTER_QUALIFIER) + readCounterCell(row, CLICK_BACKFILLED_QUALIFIER);
+    }
+
+    private static long readCounterCell(Row row, String qualifier) {
+        List<RowCell> cells = row.getCells("click_info", qualifier);
+        return cells.isEmpty() ? 0L : readLong(cells.get(0).getValue());
+    }
+
+    // Decodes a 64-bit big-endian cell as written by ReadModifyWriteRow increments
+    private static long readLong(ByteString value) {
+        return value.size() == Long.BYTES ? ByteBuffer.wrap(value.toByteArray()).getLong() : 0L;
+    }
+
+    /**
+     * Moves legacy click#<code>#<timestamp> rows to the bucketed layout.
+     * Rows are copied in chunks and the legacy rows are deleted only after their copies are
+     * written. Bucket and uniquifier are derived from the legacy key, so a re-run after a
+     * failure rewrites the same target rows instead of duplicating clicks.
+     *
+     * @param chunkSize Number of rows copied before the matching deletes are issued
+     * @return The number of rows migrated
+     */
+    public long migrateLegacyClickRows(int chunkSize) {
+        long migrated = 0;
+        List<ByteString> pendingDeletes = new ArrayList<>(chunkSize);
+        Batcher<RowMutationEntry, Void> batcher = client.newBulkMutationBatcher("url_analytics");
+        try {
+            for (Row row : client.readRows(Query.create("url_analytics").prefix(ClickRowKeys.LEGACY_PREFIX))) {
+                String legacyKey = row.getKey().toStringUtf8();
+                int codeEnd = legacyKey.lastIndexOf('#');
+                if (codeEnd <= ClickRowKeys.LEGACY_PREFIX.length()) continue;
+                String shortCode = legacyKey.substring(ClickRowKeys.LEGACY_PREFIX.length(), codeEnd);
+
+                int hash = legacyKey.hashCode();
+                String newKey = clickRowKeys.bucketedKey(Math.floorMod(hash, clickRowKeys.buckets()), shortCode,
+                        ClickRowKeys.timestampMillis(legacyKey), "m" + Integer.toHexString(hash));
+                RowMutationEntry copy = RowMutationEntry.create(newKey);
+                for (RowCell cell : row.getCells()) {
+                    copy.setCell(cell.getFamily(), cell.getQualifier(), cell.getTimestamp(), cell.getValue());
+                }
+                batcher.add(copy);
+                pendingDeletes.add(row.getKey());
+
+                if (pendingDeletes.size() >= chunkSize) {
+                    migrated += deleteAfterFlush(batcher, pendingDeletes);
+                }
+            }
+            migrated += deleteAfterFlush(batcher, pendingDeletes);
+        } finally {
+            closeBatcher(batcher);
+        }
+        return migrated;
+    }
+
+    // Waits for queued copies to be written, then queues deletes of the copied legacy rows
+    private int deleteAfterFlush(Batcher<RowMutationEntry, Void> batcher, List<ByteString> legacyKeys) {
+        try {
+            batcher.flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while migrating click rows", e);
+        }
+        for (ByteString key : legacyKeys) {
+            batcher.add(RowMutationEntry.create(key).deleteRow());
+        }
+        int count = legacyKeys.size();
+        legacyKeys.clear();
+        return count;
+    }
+
+    /**
+     * Initializes the per-link counters from click rows written before counters existed.
+     * Only rows older than {@code cutoff} (the first deploy that maintained counters) are counted,
+     * so clicks already counted live are not counted twice. The historical count is stored in its
+     * own click_info:backfilled_count cell by the same conditional mutation that marks the counter
+     * as backfilled, so a link is either fully backfilled or not at all and the job is safe to re-run.
+     * <p>
+     * Clicks are counted in every key layout, so the job gives the same result before or after
+     * {@link #migrateLegacyClickRows}. It must not run while that migration is copying rows,
+     * which briefly exist under both layouts. Links are read from url_tracking and their
+     * click ranges scanned {@code CLICK_BACKFILL_LINKS_PER_SCAN} links at a time, by the code
+     * their clicks are recorded under.
+     *
+     * @param cutoff Click rows with a timestamp before this are historical
+     * @return The number of links whose counters were backfilled
+     */
+    public int backfillClickCounters(LocalDateTime cutoff) {
+        long cutoffMillis = cutoff.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        int backfilled = 0;
+        Set<String> analyticsKeys = new LinkedHashSet<>();
+        for (Row row : client.readRows(Query.create("url_tracking").prefix(URL_PREFIX).filter(REDIRECT_COLUMNS))) {
+            analyticsKeys.add(mapRowToShortUrl(row).getAnalyticsKey());
+            if (analyticsKeys.size() >= CLICK_BACKFILL_LINKS_PER_SCAN) {
+                backfilled += backfillClickCounters(analyticsKeys, cutoffMillis);
+                analyticsKeys.clear();
+            }
+        }
+        return backfilled + backfillClickCounters(analyticsKeys, cutoffMillis);
+    }
+
+    // Counts the historical clicks of a group of links over all their key ranges, then backfills each counter
+    private int backfillClickCounters(Collection<String> analyticsKeys, long cutoffMillis) {
+        if (analyticsKeys.isEmpty()) return 0;
+        Query keys = Query.create("url_analytics").filter(KEY_ONLY);
+        for (String analyticsKey : analyticsKeys) {
+            clickRowKeys.bucketPrefixes(analyticsKey).forEach(keys::prefix);
+            keys.prefix(clickRowKeys.legacyPrefix(analyticsKey));
+        }
+
+        Map<String, Long> counts = new HashMap<>();
+        for (Row row : client.readRows(keys)) {
+            String rowKey = row.getKey().toStringUtf8();
+            if (ClickRowKeys.timestampMillis(rowKey) < cutoffMillis) {
+                counts.merge(ClickRowKeys.shortCode(rowKey), 1L, Long::sum);
+            }
+        }
+        int backfilled = 0;
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            if (backfillClickCounter(count.getKey(), count.getValue())) backfilled++;
+        }
+        return backfilled;
     }
 
-    public int getClickCount(String shortCode) {
-        int[] count = {0};
-        client.readRows(Query.create("url_analytics").prefix("click#" + shortCode + "#"))
-                .forEach(row -> count[0]++);
-        return count[0];
+    private boolean backfillClickCounter(String shortCode, long historicalClicks) {
+        if (historicalClicks == 0) return false;
+        String rowKey = CLICK_COUNTER_PREFIX + shortCode;
+        ConditionalRowMutation backfill = ConditionalRowMutation.create("url_analytics", rowKey)
+                .condition(FILTERS.qualifier().exactMatch("backfilled"))
+                .otherwise(Mutation.create()
+                        .setCell("click_info", "backfilled", "true")
+                        .setCell("click_info", ByteString.copyFromUtf8(CLICK_BACKFILLED_QUALIFIER),
+                                ByteString.copyFrom(ByteBuffer.allocate(Long.BYTES).putLong(historicalClicks).array())));
+        boolean alreadyBackfilled = client.checkAndMutateRow(backfill);
+        return !alreadyBackfilled;
     }
 }
@@ -0,0 +1,27 @@
+package com.snaplink.urlshortener.repository;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A lazily read sequence of click records of one link, newest first.
+ * Must be closed when the caller stops reading.
+ */
+public interface ClickDetailsStream extends Iterator<Map<String, String>>, AutoCloseable {
+
+    /**
+     * Fields a click record can contain, in output order.
+     */
+    List<String> FIELDS = List.of("timestamp", "ip_address", "referrer", "userAgent", "geo_location");
+
+    /**
+     * Returns an opaque cursor that resumes after the last record returned by {@link #next()}.
+     *
+     * @return The cursor, or null if nothing has been read yet
+     */
+    String cursor();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,49 @@
+package com.snaplink.urlshortener.repository;
+
+import java.net.URI;
+import java.util.Locale;
+
+/**
+ * Normalizes click metadata into low-cardinality values for rollup counters,
+ * so one rollup row does not grow a column per distinct referrer URL or user agent string.
+ */
+final class ClickDimensions {
+    private static final int MAX_LENGTH = 100;
+
+    private ClickDimensions() {}
+
+    // Referrer host, or "Direct" when there is no usable referrer
+    static String referrer(String referrer) {
+        if (referrer == null || referrer.isEmpty() || "Direct".equals(referrer)) {
+            return "Direct";
+        }
+        try {
+            String host = URI.create(referrer.trim()).getHost();
+            return host == null ? "Other" : truncate(host.toLowerCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return "Other";
+        }
+    }
+
+    // Browser family; Edge and Opera are checked first because their UA strings also contain "Chrome"
+    static String userAgent(String userAgent) {
+        if (userAgent == null || userAgent.isEmpty() || "Unknown".equals(userAgent)) {
+            return "Unknown";
+        }
+        if (userAgent.contains("Edg")) return "Edge";
+        if (userAgent.contains("OPR") || userAgent.contains("Opera")) return "Opera";
+        if (userAgent.contains("Chrome")) return "Chrome";
+        if (userAgent.contains("Firefox")) return "Firefox";
+        if (userAgent.contains("Safari")) return "Safari";
+        if (userAgent.toLowerCase(Locale.ROOT).contains("bot")) return "Bot";
+        return "Other";
+    }
+
+    static String geo(String geoLocation) {
+        return geoLocation == null || geoLocation.isEmpty() ? "Unknown" : truncate(geoLocation);
+    }
+
+    private static String truncate(String value) {
+        return value.length() > MAX_LENGTH ? value.substring(0, MAX_LENGTH) : value;
+    }
+}
@@ -0,0 +1,222 @@
+package com.snaplink.urlshortener.repository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Row key layout for click rows in url_analytics.
+ * <p>
+ * The legacy layout {@code click#<code>#<LocalDateTime>} puts every click of a link in one
+ * contiguous key range (one tablet for a viral link) and lets two clicks in the same
+ * millisecond overwrite each other. The bucketed layout
+ * {@code c#<bucket>#<code>#<reversed millis>#<uniquifier>} spreads a link's clicks over
+ * {@code buckets} ranges that sit far apart in the key space, orders each bucket newest
+ * first, and makes every key unique. Readers fan out over all buckets and merge.
+ * The bucket count must only be changed together with a migration of existing rows.
+ */
+public final class ClickRowKeys {
+
+    /**
+     * Which layout new click rows are written with.
+     */
+    public enum Scheme { LEGACY, BUCKETED }
+
+    public static final String LEGACY_PREFIX = "click#";
+    public static final String BUCKETED_PREFIX = "c#";
+
+    private static final int TIMESTAMP_DIGITS = 19;
+
+    private final Scheme scheme;
+    private final int buckets;
+    private final boolean readLegacy;
+
+    /**
+     * @param scheme The layout used for new click rows
+     * @param buckets The number of salt buckets in the bucketed layout (1-256)
+     * @param readLegacy Whether readers should also look at legacy rows
+     */
+    public ClickRowKeys(Scheme scheme, int buckets, boolean readLegacy) {
+        if (buckets < 1 || buckets > 256) {
+            throw new IllegalArgumentException("Click key buckets must be between 1 and 256: " + buckets);
+        }
+        this.scheme = scheme;
+        this.buckets = buckets;
+        this.readLegacy = readLegacy || scheme == Scheme.LEGACY;
+    }
+
+    /**
+     * Builds the row key for a new click.
+     *
+     * @param shortCode The clicked short code
+     * @param timestampMillis The click time in epoch milliseconds
+     * @return The row key for the click
+     */
+    public String newRowKey(String shortCode, long timestampMillis) {
+        if (scheme == Scheme.LEGACY) {
+            return legacyPrefix(shortCode) + toLocalDateTime(timestampMillis);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return bucketedKey(random.nextInt(buckets), shortCode, timestampMillis,
+                String.format("%012x", random.nextLong() & 0xFFFFFFFFFFFFL));
+    }
+
+    /**
+     * Builds a bucketed row key with an explicit uniquifier.
+     */
+    public String bucketedKey(int bucket, String shortCode, long timestampMillis, String uniquifier) {
+        return bucketPrefix(bucket, shortCode) + reversedTimestamp(timestampMillis) + "#" + uniquifier;
+    }
+
+    /**
+     * Returns the key prefix of one bucket of a link's clicks.
+     */
+    public String bucketPrefix(int bucket, String shortCode) {
+        return BUCKETED_PREFIX + String.format("%02x", bucket) + "#" + shortCode + "#";
+    }
+
+    /**
+     * Returns the key prefixes of all bucketed ranges of a link, one per bucket.
+     */
+    public List<String> bucketPrefixes(String shortCode) {
+        List<String> prefixes = new ArrayList<>(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            prefixes.add(bucketPrefix(bucket, shortCode));
+        }
+        return prefixes;
+    }
+
+    /**
+     * Returns the legacy key prefix of a link's clicks.
+     */
+    public String legacyPrefix(String shortCode) {
+        return LEGACY_PREFIX + shortCode + "#";
+    }
+
+    /**
+     * Returns every prefix under which clicks of a link may be stored.
+     */
+    public List<String> allPrefixes(String shortCode) {
+        List<String> prefixes = bucketPrefixes(shortCode);
+        if (readLegacy) {
+            prefixes.add(legacyPrefix(shortCode));
+        }
+        return prefixes;
+    }
+
+    /**
+     * Returns whether a row key is a complete click key of the given link in either layout,
+     * as required of a key a click details cursor resumes after.
+     *
+     * @param shortCode The link being read
+     * @param rowKey The decoded cursor key
+     * @return Whether the key belongs to the link and has a full timestamp (and uniquifier)
+     */
+    public boolean isClickKeyOf(String shortCode, String rowKey) {
+        String legacyPrefix = legacyPrefix(shortCode);
+        if (rowKey.startsWith(legacyPrefix)) {
+            try {
+                LocalDateTime.parse(rowKey.substring(legacyPrefix.length()));
+                return true;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        for (String prefix : bucketPrefixes(shortCode)) {
+            if (rowKey.startsWith(prefix)) {
+                return isBucketedSuffix(rowKey.substring(prefix.length()));
+            }
+        }
+        return false;
+    }
+
+    // <reversed millis>#<uniquifier> with exactly TIMESTAMP_DIGITS digits and a non-empty uniquifier
+    private static boolean isBucketedSuffix(String suffix) {
+        if (suffix.length() < TIMESTAMP_DIGITS + 2 || suffix.charAt(TIMESTAMP_DIGITS) != '#') return false;
+        for (int i = 0; i < TIMESTAMP_DIGITS; i++) {
+            if (suffix.charAt(i) < '0' || suffix.charAt(i) > '9') return false;
+        }
+        return suffix.indexOf('#', TIMESTAMP_DIGITS + 1) < 0;
+    }
+
+    /**
+     * Returns whether readers should include legacy rows.
+     */
+    public boolean readsLegacy() {
+        return readLegacy;
+    }
+
+    /**
+     * Returns the number of salt buckets.
+     */
+    public int buckets() {
+        return buckets;
+    }
+
+    /**
+     * Extracts the click time from a row key in either layout.
+     *
+     * @param rowKey A click row key
+     * @return The click time in epoch milliseconds
+     */
+    public static long timestampMillis(String rowKey) {
+        if (rowKey.startsWith(LEGACY_PREFIX)) {
+            String timestamp = rowKey.substring(rowKey.lastIndexOf('#') + 1);
+            return LocalDateTime.parse(timestamp).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+        int uniquifierStart = rowKey.lastIndexOf('#');
+        String reversed = rowKey.substring(uniquifierStart - TIMESTAMP_DIGITS, uniquifierStart);
+        return Long.MAX_VALUE - Long.parseLong(reversed);
+    }
+
+    /**
+     * Extracts the short code (the analytics key) from a row key in either layout.
+     *
+     * @param rowKey A click row key
+     * @return The code the click was recorded under
+     */
+    public static String shortCode(String rowKey) {
+        int timestampStart = rowKey.lastIndexOf('#');
+        if (rowKey.startsWith(LEGACY_PREFIX)) {
+            return rowKey.substring(LEGACY_PREFIX.length(), timestampStart);
+        }
+        // c#<bucket>#<code>#<reversed millis>#<uniquifier>
+        int codeStart = BUCKETED_PREFIX.length() + 3;
+        return rowKey.substring(codeStart, rowKey.lastIndexOf('#', timestampStart - 1));
+    }
+
+    /**
+     * Returns the click time of a row key formatted like the legacy keys (local date-time).
+     */
+    public static String timestampString(String rowKey) {
+        if (rowKey.startsWith(LEGACY_PREFIX)) {
+            return rowKey.substring(rowKey.lastIndexOf('#') + 1);
+        }
+        return toLocalDateTime(timestampMillis(rowKey)).toString();
+    }
+
+    /**
+     * Returns the part of a bucketed key that orders clicks newest first across buckets.
+     */
+    public static String sortKey(String rowKey) {
+        int uniquifierStart = rowKey.lastIndexOf('#');
+        return rowKey.substring(uniquifierStart - TIMESTAMP_DIGITS);
+    }
+
+    static String reversedTimestamp(long timestampMillis) {
+        return String.format("%019d", Long.MAX_VALUE - timestampMillis);
+    }
+
+    // Legacy keys use LocalDateTime.toString(), which sorts in time order
+    static String legacyTimestamp(long timestampMillis) {
+        return toLocalDateTime(timestampMillis).toString();
+    }
+
+    private static LocalDateTime toLocalDateTime(long timestampMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault());
+    }
+}
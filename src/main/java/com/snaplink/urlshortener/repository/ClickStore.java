@@ -0,0 +1,61 @@
+package com.snaplink.urlshortener.repository;
+
+import com.snaplink.urlshortener.model.ClickEvent;
+import com.snaplink.urlshortener.model.ClickTimeSeries;
+import com.snaplink.urlshortener.model.RollupGranularity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Storage of click events, per-link click counters and time-bucketed click rollups.
+ */
+public interface ClickStore {
+
+    /**
+     * Returns every click of a link, newest first.
+     */
+    List<Map<String, String>> getClickDetails(String shortCode);
+
+    /**
+     * Opens a lazy stream over the clicks of a link, newest first.
+     *
+     * @param fromMillis Oldest click to include (inclusive), or 0 for no lower bound
+     * @param toMillis Newest click to include (inclusive), or Long.MAX_VALUE for no upper bound
+     * @param fields The record fields to return, a subset of {@link ClickDetailsStream#FIELDS}
+     * @param cursor A cursor from a previous stream to resume after, or null
+     * @param limit A hint for how many clicks will be read, or 0 for no limit
+     * @return The stream; the caller must close it
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    ClickDetailsStream openClickDetails(String shortCode, long fromMillis, long toMillis,
+                                        Set<String> fields, String cursor, int limit);
+
+    /**
+     * Stores a batch of clicks and updates the counters and rollups they affect.
+     */
+    void recordClicks(List<ClickEvent> events);
+
+    /**
+     * Returns the rollup buckets of a link within a time range, oldest first.
+     */
+    List<ClickTimeSeries.Point> getClickRollups(String shortCode, RollupGranularity granularity, long fromMillis, long toMillis);
+
+    long getClickCount(String shortCode);
+
+    /**
+     * Returns the click counts of several links; links without clicks may be missing.
+     */
+    Map<String, Long> getClickCounts(Collection<String> shortCodes);
+
+    /**
+     * Deletes all clicks, counters and rollups of several links. Memory use does not depend
+     * on how many clicks the links have.
+     *
+     * @param shortCodes The analytics keys of the links
+     * @return The number of click and rollup rows deleted
+     */
+    long deleteClickData(Collection<String> shortCodes);
+}
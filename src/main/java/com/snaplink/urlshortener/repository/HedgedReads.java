@@ -0,0 +1,180 @@
+package com.snaplink.urlshortener.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Hedged point reads: when a read has not answered within the recent {@code percentile}
+ * latency, the same read is sent once more and whichever answers first wins. A read stuck on
+ * a slow tablet server or a bad connection then costs about one p95 plus one typical read
+ * instead of its full tail latency.
+ * <p>
+ * The delay is derived from the latencies of the last {@value #WINDOW} reads and clamped to
+ * {@code [min-delay-ms, max-delay-ms]}; until enough reads are seen it is {@code max-delay-ms}.
+ * Extra reads are paid for from a budget that every read tops up by {@code max-extra-load-percent}
+ * of a request, so hedging can never add more than that share of load, even when the whole
+ * table slows down. Only idempotent reads may be hedged.
+ */
+final class HedgedReads implements AutoCloseable {
+
+    // Recent latencies kept for the percentile, and how often it is recomputed
+    static final int WINDOW = 1024;
+    private static final int REFRESH_EVERY = 256;
+    private static final int MIN_SAMPLES = 100;
+
+    // Budget in millionths of a request; at most BURST hedges can be sent back to back
+    private static final long TOKEN = 1_000_000L;
+    private static final long BURST = 10 * TOKEN;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final long depositPerRead;
+
+    private final AtomicLongArray latencies = new AtomicLongArray(WINDOW);
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong budget = new AtomicLong();
+    private volatile long delayNanos;
+
+    private final Counter sent;
+    private final Counter won;
+    private final Counter skipped;
+    private final ScheduledExecutorService timer;
+
+    HedgedReads(boolean enabled, double percentile, long minDelayMillis, long maxDelayMillis,
+                double maxExtraLoadPercent, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.depositPerRead = Math.round(maxExtraLoadPercent / 100 * TOKEN);
+        this.delayNanos = maxDelayNanos;
+
+        this.sent = Counter.builder("bigtable.hedged_reads").tag("result", "sent").register(meterRegistry);
+        this.won = Counter.builder("bigtable.hedged_reads").tag("result", "won").register(meterRegistry);
+        this.skipped = Counter.builder("bigtable.hedged_reads").tag("result", "over_budget").register(meterRegistry);
+        Gauge.builder("bigtable.hedged_reads.delay_ms", this, h -> h.delayNanos / 1e6).register(meterRegistry);
+
+        this.timer = enabled ? Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bigtable-hedged-reads");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * Starts a read and, if it is still outstanding after the hedging delay and the budget
+     * allows, the same read a second time.
+     *
+     * @param read Starts one attempt of the read
+     * @return The result of the first attempt to succeed, or the last failure if all failed
+     */
+    <T> CompletableFuture<T> read(Supplier<CompletableFuture<T>> read) {
+        if (!enabled) {
+            return read.get();
+        }
+        deposit();
+        long started = System.nanoTime();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        // Attempts that have not failed yet; the result fails only when this drops to zero
+        AtomicInteger outstanding = new AtomicInteger(1);
+        read.get().whenComplete((value, error) -> {
+            if (error == null) record(System.nanoTime() - started);
+            settle(result, outstanding, value, error);
+        });
+        if (result.isDone()) return result;
+
+        ScheduledFuture<?> hedge = timer.schedule(() -> {
+            if (result.isDone()) return;
+            if (!withdraw()) {
+                skipped.increment();
+                return;
+            }
+            if (outstanding.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0) {
+                deposit(TOKEN);
+                return;
+            }
+            sent.increment();
+            read.get().whenComplete((value, error) -> {
+                if (error == null && !result.isDone()) won.increment();
+                settle(result, outstanding, value, error);
+            });
+        }, delayNanos, TimeUnit.NANOSECONDS);
+        result.whenComplete((value, error) -> hedge.cancel(false));
+        return result;
+    }
+
+    private static <T> void settle(CompletableFuture<T> result, AtomicInteger outstanding, T value, Throwable error) {
+        if (error == null) {
+            result.complete(value);
+        } else if (outstanding.decrementAndGet() == 0) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    private void record(long latencyNanos) {
+        long n = recorded.getAndIncrement();
+        latencies.set((int) (n % WINDOW), latencyNanos);
+        if ((n + 1) % REFRESH_EVERY == 0 && n + 1 >= MIN_SAMPLES) {
+            refreshDelay((int) Math.min(n + 1, WINDOW));
+        }
+    }
+
+    // Runs on the thread that completed every REFRESH_EVERY-th read; sorts at most WINDOW longs
+    private void refreshDelay(int samples) {
+        long[] sorted = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        long quantile = sorted[Math.min(samples - 1, (int) Math.ceil(percentile * samples) - 1)];
+        delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, quantile));
+    }
+
+    private void deposit() {
+        deposit(depositPerRead);
+    }
+
+    private void deposit(long amount) {
+        budget.accumulateAndGet(amount, (current, add) -> Math.min(BURST, current + add));
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < TOKEN) return false;
+        } while (!budget.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    /**
+     * Returns the current hedging delay.
+     *
+     * @return The delay in nanoseconds
+     */
+    long delayNanos() {
+        return delayNanos;
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+}
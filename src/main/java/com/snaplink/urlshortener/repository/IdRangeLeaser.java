@@ -0,0 +1,17 @@
+package com.snaplink.urlshortener.repository;
+
+/**
+ * Hands out disjoint blocks of numeric IDs to application instances.
+ * Each instance leases a block once and then generates IDs locally without coordination.
+ */
+@FunctionalInterface
+public interface IdRangeLeaser {
+
+    /**
+     * Reserves the next {@code size} IDs for the caller.
+     *
+     * @param size The number of IDs to reserve
+     * @return The first ID of the reserved block; the block is {@code [start, start + size)}
+     */
+    long leaseRange(long size);
+}
@@ -0,0 +1,678 @@
+package com.snaplink.urlshortener.repository;
+
+import com.snaplink.urlshortener.model.ClickEvent;
+import com.snaplink.urlshortener.model.ClickTimeSeries;
+import com.snaplink.urlshortener.model.CursorPage;
+import com.snaplink.urlshortener.model.RollupGranularity;
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.model.User;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Process-local implementation of all stores, selected with the {@code inmemory} profile.
+ * Lets the service layer run and be load-tested without GCP, so application CPU cost can be
+ * measured apart from storage latency. Nothing survives a restart.
+ * <p>
+ * All structures are lock-free concurrent maps except the per-link click logs, which append
+ * under a short per-link lock into primitive timestamp arrays. Stored objects are copied on
+ * the way in and out, matching the value semantics of a remote store.
+ */
+@Repository
+@Profile("inmemory")
+public class InMemoryRepository implements UserStore, UrlStore, ClickStore {
+
+    // ---- Users ----
+    private final ConcurrentHashMap<String, User> users = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> userIdsByEmail = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> userIdsByUsername = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ResetToken> resetTokens = new ConcurrentHashMap<>();
+
+    // ---- URLs ----
+    private final ConcurrentHashMap<String, ShortUrl> urls = new ConcurrentHashMap<>();
+    // Per user: "<reversed creation millis>#<code>" -> code, so iteration is newest first
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<String, String>> urlsByUser = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    // Codes a renamed link still records its clicks under, mapped to the link's current code
+    private final ConcurrentHashMap<String, String> retiredCodes = new ConcurrentHashMap<>();
+    // "<expiration millis>#<code>" -> code, for links that expire
+    private final ConcurrentSkipListMap<String, String> expiryIndex = new ConcurrentSkipListMap<>();
+    // "<announce millis>#<code>" -> code, the journal of announced custom codes
+    private final ConcurrentSkipListMap<String, String> announcements = new ConcurrentSkipListMap<>();
+
+    // ---- Clicks ----
+    private final ConcurrentHashMap<String, ClickLog> clickLogs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> clickCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, RollupBucket>> rollups = new ConcurrentHashMap<>();
+
+    // ---- User Operations ----
+
+    @Override
+    public boolean createUser(User user) {
+        if (userIdsByUsername.putIfAbsent(user.getUsername(), user.getId()) != null) {
+            return false;
+        }
+        if (userIdsByEmail.putIfAbsent(user.getEmail(), user.getId()) != null) {
+            userIdsByUsername.remove(user.getUsername(), user.getId());
+            return false;
+        }
+        users.put(user.getId(), copy(user));
+        return true;
+    }
+
+    @Override
+    public List<User> getUsers() {
+        return users.values().stream().map(InMemoryRepository::copy).collect(Collectors.toList());
+    }
+
+    @Override
+    public Optional<User> findById(String id) {
+        return Optional.ofNullable(users.get(id)).map(InMemoryRepository::copy);
+    }
+
+    @Override
+    public void updateUser(User user) {
+        if (user.getResetToken() != null && user.getResetTokenExpiry() != null) {
+            resetTokens.put(user.getResetToken(), new ResetToken(user.getId(), user.getResetTokenExpiry()));
+        }
+        users.computeIfPresent(user.getId(), (id, stored) -> {
+            User updated = copy(stored);
+            if (user.getPassword() != null) {
+                updated.setPassword(user.getPassword());
+            }
+            updated.setResetToken(user.getResetToken());
+            updated.setResetTokenExpiry(user.getResetTokenExpiry());
+            return updated;
+        });
+    }
+
+    @Override
+    public void deleteResetToken(String token) {
+        resetTokens.remove(token);
+    }
+
+    @Override
+    public int purgeExpiredResetTokens(LocalDateTime now) {
+        int before = resetTokens.size();
+        resetTokens.values().removeIf(token -> token.expiresAt.isBefore(now));
+        return Math.max(0, before - resetTokens.size());
+    }
+
+    @Override
+    public void deleteUserByRowKey(String email) {
+        String id = userIdsByEmail.remove(email);
+        if (id == null) return;
+        User removed = users.remove(id);
+        if (removed != null) {
+            userIdsByUsername.remove(removed.getUsername(), id);
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        String id = userIdsByEmail.get(email);
+        return id == null ? Optional.empty() : findById(id);
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return userIdsByUsername.containsKey(username);
+    }
+
+    @Override
+    public boolean existsByEmail(String email) {
+        return userIdsByEmail.containsKey(email);
+    }
+
+    @Override
+    public Optional<User> findByResetToken(String token) {
+        ResetToken entry = resetTokens.get(token);
+        if (entry == null) return Optional.empty();
+        return findById(entry.userId).filter(user -> token.equals(user.getResetToken()));
+    }
+
+    private static User copy(User user) {
+        return new User(user.getId(), user.getUsername(), user.getEmail(), user.getPassword(),
+                user.getSubscriptionPlan(), user.getCreatedAt(), user.getResetToken(), user.getResetTokenExpiry());
+    }
+
+    // ---- URL Operations ----
+
+    @Override
+    public boolean createShortUrl(ShortUrl url) {
+        ShortUrl stored = copy(url);
+        if (urls.putIfAbsent(url.getShortCode(), stored) != null) {
+            return false;
+        }
+        // Checked after the put: renames retire the code before they free it
+        if (retiredCodes.containsKey(url.getShortCode())) {
+            urls.remove(url.getShortCode(), stored);
+            return false;
+        }
+        urlsByUser.computeIfAbsent(url.getUserId(), id -> new ConcurrentSkipListMap<>())
+                .put(userListingKey(url), url.getShortCode());
+        if (url.getExpirationMillis() != Long.MAX_VALUE) {
+            expiryIndex.put(expiryKey(url.getExpirationMillis(), url.getShortCode()), url.getShortCode());
+        }
+        return true;
+    }
+
+    @Override
+    public List<Boolean> createShortUrls(List<ShortUrl> urls) {
+        List<Boolean> created = new ArrayList<>(urls.size());
+        for (ShortUrl url : urls) {
+            created.add(createShortUrl(url));
+        }
+        return created;
+    }
+
+    @Override
+    public long leaseRange(long size) {
+        return nextId.getAndAdd(size);
+    }
+
+    @Override
+    public long peekSequence() {
+        return nextId.get();
+    }
+
+    @Override
+    public int heartbeat(String instanceId, long ttlMillis) {
+        // Everything that shares this store runs in this process
+        return 1;
+    }
+
+    @Override
+    public void announceShortCodes(Collection<String> shortCodes) {
+        long now = System.currentTimeMillis();
+        shortCodes.forEach(code -> announcements.put(String.format("%013d#%s", now, code), code));
+    }
+
+    @Override
+    public void forEachAnnouncedShortCode(long sinceMillis, Consumer<String> action) {
+        announcements.tailMap(String.format("%013d", Math.max(0L, sinceMillis))).values().forEach(action);
+    }
+
+    @Override
+    public void deleteAnnouncementsBefore(long beforeMillis) {
+        announcements.headMap(String.format("%013d", Math.max(0L, beforeMillis))).clear();
+    }
+
+    @Override
+    public ShortUrl getShortUrl(String shortCode) {
+        ShortUrl url = urls.get(shortCode);
+        return url == null ? null : copy(url);
+    }
+
+    @Override
+    public ShortUrl getShortUrlForRedirect(String shortCode) {
+        return getShortUrl(shortCode);
+    }
+
+    @Override
+    public CompletableFuture<ShortUrl> getShortUrlForRedirectAsync(String shortCode) {
+        return CompletableFuture.completedFuture(getShortUrlForRedirect(shortCode));
+    }
+
+    @Override
+    public void deleteShortUrl(String shortCode) {
+        ShortUrl removed = urls.remove(shortCode);
+        if (removed == null) return;
+        Map<String, String> listing = urlsByUser.get(removed.getUserId());
+        if (listing != null) {
+            listing.remove(userListingKey(removed));
+        }
+        expiryIndex.remove(expiryKey(removed.getExpirationMillis(), shortCode));
+    }
+
+    @Override
+    public ShortUrl renameShortUrl(String oldCode, String newCode) {
+        ShortUrl existing = urls.get(oldCode);
+        if (existing == null) {
+            throw new IllegalArgumentException("Old short code does not exist.");
+        }
+        ShortUrl renamed = copy(existing);
+        renamed.setShortCode(newCode);
+        renamed.setCustomAlias(newCode);
+        renamed.setAnalyticsKey(existing.getAnalyticsKey());
+        if (urls.putIfAbsent(newCode, renamed) != null) {
+            throw new IllegalArgumentException("The new short code is already in use.");
+        }
+        // Retired before the old entry goes, so a create never gets the old code in between
+        boolean retired = existing.getAnalyticsKey().equals(oldCode)
+                && retiredCodes.putIfAbsent(oldCode, newCode) == null;
+        // Only one rename can remove the exact object it copied
+        if (!urls.remove(oldCode, existing)) {
+            urls.remove(newCode, renamed);
+            if (retired) {
+                retiredCodes.remove(oldCode, newCode);
+            }
+            throw new IllegalArgumentException("Old short code does not exist or is already being renamed.");
+        }
+
+        ConcurrentSkipListMap<String, String> listing =
+                urlsByUser.computeIfAbsent(existing.getUserId(), id -> new ConcurrentSkipListMap<>());
+        listing.remove(userListingKey(existing));
+        listing.put(userListingKey(renamed), newCode);
+        if (existing.getExpirationMillis() != Long.MAX_VALUE) {
+            expiryIndex.remove(expiryKey(existing.getExpirationMillis(), oldCode));
+            expiryIndex.put(expiryKey(renamed.getExpirationMillis(), newCode), newCode);
+        }
+        return copy(renamed);
+    }
+
+    @Override
+    public void deleteShortUrls(List<ShortUrl> urls) {
+        for (ShortUrl url : urls) {
+            deleteShortUrl(url.getShortCode());
+        }
+    }
+
+    @Override
+    public List<ShortUrl> getUnlistedUrlsByUserId(String userId) {
+        Map<String, String> listing = urlsByUser.getOrDefault(userId, new ConcurrentSkipListMap<>());
+        List<ShortUrl> unlisted = new ArrayList<>();
+        for (ShortUrl url : urls.values()) {
+            if (userId.equals(url.getUserId()) && !listing.containsKey(userListingKey(url))) {
+                unlisted.add(copy(url));
+            }
+        }
+        return unlisted;
+    }
+
+    @Override
+    public long deleteIndexRowsOfUser(String userId) {
+        Map<String, String> listing = urlsByUser.remove(userId);
+        return listing == null ? 0 : listing.size();
+    }
+
+    @Override
+    public List<ShortUrl> getAllUrlsByUserId(String userId) {
+        Map<String, String> listing = urlsByUser.get(userId);
+        return listing == null ? new ArrayList<>() : getShortUrls(new ArrayList<>(listing.values()));
+    }
+
+    @Override
+    public CursorPage<ShortUrl> getUrlsByUserIdPage(String userId, int limit, String cursor) {
+        NavigableMap<String, String> listing = urlsByUser.getOrDefault(userId, new ConcurrentSkipListMap<>());
+        if (cursor != null && !cursor.isEmpty()) {
+            listing = listing.tailMap(decodeCursor(cursor), false);
+        }
+
+        List<String> shortCodes = new ArrayList<>(limit);
+        String lastKey = null;
+        boolean hasMore = false;
+        for (Map.Entry<String, String> entry : listing.entrySet()) {
+            if (shortCodes.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            shortCodes.add(entry.getValue());
+            lastKey = entry.getKey();
+        }
+        return new CursorPage<>(getShortUrls(shortCodes), hasMore ? encodeCursor(lastKey) : null);
+    }
+
+    @Override
+    public List<ShortUrl> getShortUrls(List<String> shortCodes) {
+        List<ShortUrl> found = new ArrayList<>(shortCodes.size());
+        for (String code : shortCodes) {
+            ShortUrl url = urls.get(code);
+            if (url != null) {
+                found.add(copy(url));
+            }
+        }
+        return found;
+    }
+
+    // Scans the user's own links; the per-user scope keeps this independent of the total link count
+    @Override
+    public Set<String> findSearchCandidates(String userId, String query, int maxPerTerm) {
+        Set<String> candidates = new LinkedHashSet<>();
+        Map<String, String> listing = urlsByUser.get(userId);
+        if (query.isEmpty() || listing == null) return candidates;
+
+        for (String code : listing.values()) {
+            ShortUrl url = urls.get(code);
+            if (url != null && (SearchTerms.normalize(url.getShortCode()).contains(query)
+                    || SearchTerms.normalize(url.getCustomAlias()).contains(query)
+                    || SearchTerms.normalize(url.getLongUrl()).contains(query))) {
+                candidates.add(code);
+                if (candidates.size() >= maxPerTerm) break;
+            }
+        }
+        return candidates;
+    }
+
+    @Override
+    public void forEachShortCode(Consumer<String> action) {
+        urls.keySet().forEach(action);
+    }
+
+    @Override
+    public void forEachShortUrl(Consumer<ShortUrl> action) {
+        urls.values().forEach(url -> action.accept(copy(url)));
+    }
+
+    @Override
+    public boolean existsByShortCode(String shortCode) {
+        return urls.containsKey(shortCode) || retiredCodes.containsKey(shortCode);
+    }
+
+    @Override
+    public boolean consumeOneTimeLink(String shortCode) {
+        boolean[] consumed = {false};
+        urls.computeIfPresent(shortCode, (code, url) -> {
+            if (!url.isActive()) return url;
+            ShortUrl updated = copy(url);
+            updated.setActive(false);
+            consumed[0] = true;
+            return updated;
+        });
+        return consumed[0];
+    }
+
+    @Override
+    public CompletableFuture<Boolean> consumeOneTimeLinkAsync(String shortCode) {
+        return CompletableFuture.completedFuture(consumeOneTimeLink(shortCode));
+    }
+
+    @Override
+    public List<String> deactivateExpired(long nowMillis, int limit) {
+        List<String> deactivated = new ArrayList<>();
+        Map<String, String> due = expiryIndex.headMap(expiryKey(nowMillis, ""));
+        int processed = 0;
+        for (Map.Entry<String, String> entry : due.entrySet()) {
+            if (processed++ == limit) break;
+            boolean[] flipped = {false};
+            urls.computeIfPresent(entry.getValue(), (code, url) -> {
+                if (!url.isActive()) return url;
+                ShortUrl updated = copy(url);
+                updated.setActive(false);
+                flipped[0] = true;
+                return updated;
+            });
+            if (flipped[0]) deactivated.add(entry.getValue());
+            expiryIndex.remove(entry.getKey());
+        }
+        return deactivated;
+    }
+
+    private static ShortUrl copy(ShortUrl url) {
+        ShortUrl copy = new ShortUrl(url.getShortCode(), url.getLongUrl(), url.getUserId(), url.getCreationDate(),
+                url.getExpirationDate(), url.isOneTime(), url.isActive(), url.getCustomAlias());
+        copy.setAnalyticsKey(url.getAnalyticsKey());
+        return copy;
+    }
+
+    private static String expiryKey(long expirationMillis, String shortCode) {
+        return String.format("%019d", Math.max(0L, expirationMillis)) + "#" + shortCode;
+    }
+
+    private static String userListingKey(ShortUrl url) {
+        return String.format("%019d", Long.MAX_VALUE - url.getCreationMillis()) + "#" + url.getShortCode();
+    }
+
+    private static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor.", e);
+        }
+    }
+
+    // ---- URL Analytics ----
+
+    @Override
+    public List<Map<String, String>> getClickDetails(String shortCode) {
+        List<Map<String, String>> records = new ArrayList<>();
+        try (ClickDetailsStream clicks = openClickDetails(shortCode, 0L, Long.MAX_VALUE,
+                new LinkedHashSet<>(ClickDetailsStream.FIELDS), null, 0)) {
+            clicks.forEachRemaining(records::add);
+        }
+        return records;
+    }
+
+    @Override
+    public ClickDetailsStream openClickDetails(String shortCode, long fromMillis, long toMillis,
+                                               Set<String> fields, String cursor, int limit) {
+        ClickLog log = clickLogs.get(shortCode);
+        ClickLog.Snapshot snapshot = log == null ? ClickLog.Snapshot.EMPTY : log.snapshot();
+        int start = snapshot.size - 1;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                start = Math.min(start, Integer.parseInt(cursor) - 1);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor.", e);
+            }
+        }
+        return new InMemoryClickDetailsStream(snapshot, start, fromMillis, toMillis, fields);
+    }
+
+    @Override
+    public void recordClicks(List<ClickEvent> events) {
+        for (ClickEvent event : events) {
+            String shortCode = event.getShortCode();
+            clickLogs.computeIfAbsent(shortCode, code -> new ClickLog()).append(event);
+            clickCounts.computeIfAbsent(shortCode, code -> new LongAdder()).increment();
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                rollups.computeIfAbsent(shortCode + "#" + granularity.getKeyPart(), k -> new ConcurrentSkipListMap<>())
+                        .computeIfAbsent(granularity.bucketStart(event.getTimestampMillis()), b -> new RollupBucket())
+                        .add(event);
+            }
+        }
+    }
+
+    @Override
+    public List<ClickTimeSeries.Point> getClickRollups(String shortCode, RollupGranularity granularity, long fromMillis, long toMillis) {
+        List<ClickTimeSeries.Point> points = new ArrayList<>();
+        ConcurrentSkipListMap<Long, RollupBucket> buckets = rollups.get(shortCode + "#" + granularity.getKeyPart());
+        if (buckets == null) return points;
+
+        buckets.subMap(granularity.bucketStart(fromMillis), true, granularity.bucketStart(toMillis), true)
+                .forEach((bucketStart, bucket) -> points.add(bucket.toPoint(bucketStart)));
+        return points;
+    }
+
+    @Override
+    public long getClickCount(String shortCode) {
+        LongAdder count = clickCounts.get(shortCode);
+        return count == null ? 0L : count.sum();
+    }
+
+    @Override
+    public Map<String, Long> getClickCounts(Collection<String> shortCodes) {
+        Map<String, Long> counts = new HashMap<>();
+        for (String code : shortCodes) {
+            LongAdder count = clickCounts.get(code);
+            if (count != null) {
+                counts.put(code, count.sum());
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public long deleteClickData(Collection<String> shortCodes) {
+        long deleted = 0;
+        for (String shortCode : shortCodes) {
+            ClickLog log = clickLogs.remove(shortCode);
+            if (log != null) {
+                deleted += log.snapshot().size;
+            }
+            clickCounts.remove(shortCode);
+            for (RollupGranularity granularity : RollupGranularity.values()) {
+                ConcurrentSkipListMap<Long, RollupBucket> buckets = rollups.remove(shortCode + "#" + granularity.getKeyPart());
+                if (buckets != null) {
+                    deleted += buckets.size();
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static final class ResetToken {
+        private final String userId;
+        private final LocalDateTime expiresAt;
+
+        ResetToken(String userId, LocalDateTime expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Append-only click log of one link in parallel arrays. Entries below {@code size} never
+     * change, so a snapshot of the arrays and size can be read without holding the lock.
+     */
+    private static final class ClickLog {
+        private long[] timestamps = new long[16];
+        private String[][] columns = new String[4][16];
+        private int size;
+
+        synchronized void append(ClickEvent event) {
+            if (size == timestamps.length) {
+                int capacity = size * 2;
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = Arrays.copyOf(columns[i], capacity);
+                }
+            }
+            timestamps[size] = event.getTimestampMillis();
+            columns[0][size] = event.getIpAddress();
+            columns[1][size] = event.getReferrer();
+            columns[2][size] = event.getUserAgent();
+            columns[3][size] = event.getGeoLocation();
+            size++;
+        }
+
+        synchronized Snapshot snapshot() {
+            return new Snapshot(timestamps, columns.clone(), size);
+        }
+
+        static final class Snapshot {
+            static final Snapshot EMPTY = new Snapshot(new long[0], new String[4][0], 0);
+
+            final long[] timestamps;
+            final String[][] columns;
+            final int size;
+
+            Snapshot(long[] timestamps, String[][] columns, int size) {
+                this.timestamps = timestamps;
+                this.columns = columns;
+                this.size = size;
+            }
+        }
+    }
+
+    // Walks a click log snapshot from the newest entry backwards; the cursor is the entry index
+    private static final class InMemoryClickDetailsStream implements ClickDetailsStream {
+        private static final String[] COLUMN_FIELDS = {"ip_address", "referrer", "userAgent", "geo_location"};
+
+        private final ClickLog.Snapshot snapshot;
+        private final long fromMillis;
+        private final long toMillis;
+        private final Set<String> fields;
+        private int position;
+        private int last = -1;
+
+        InMemoryClickDetailsStream(ClickLog.Snapshot snapshot, int start, long fromMillis, long toMillis, Set<String> fields) {
+            this.snapshot = snapshot;
+            this.position = start;
+            this.fromMillis = fromMillis;
+            this.toMillis = toMillis;
+            this.fields = fields;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position >= 0) {
+                long timestamp = snapshot.timestamps[position];
+                if (timestamp >= fromMillis && timestamp <= toMillis) {
+                    return true;
+                }
+                position--;
+            }
+            return false;
+        }
+
+        @Override
+        public Map<String, String> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            last = position--;
+            Map<String, String> record = new LinkedHashMap<>();
+            if (fields.contains("timestamp")) {
+                record.put("timestamp", ClickRowKeys.legacyTimestamp(snapshot.timestamps[last]));
+            }
+            for (int i = 0; i < COLUMN_FIELDS.length; i++) {
+                if (fields.contains(COLUMN_FIELDS[i])) {
+                    record.put(COLUMN_FIELDS[i], snapshot.columns[i][last]);
+                }
+            }
+            return record;
+        }
+
+        @Override
+        public String cursor() {
+            return last < 0 ? null : Integer.toString(last);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    // Counters of one rollup bucket, updated without locks
+    private static final class RollupBucket {
+        private final LongAdder clicks = new LongAdder();
+        private final ConcurrentHashMap<String, LongAdder> referrers = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, LongAdder> userAgents = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<String, LongAdder> geoLocations = new ConcurrentHashMap<>();
+
+        void add(ClickEvent event) {
+            clicks.increment();
+            referrers.computeIfAbsent(ClickDimensions.referrer(event.getReferrer()), k -> new LongAdder()).increment();
+            userAgents.computeIfAbsent(ClickDimensions.userAgent(event.getUserAgent()), k -> new LongAdder()).increment();
+            geoLocations.computeIfAbsent(ClickDimensions.geo(event.getGeoLocation()), k -> new LongAdder()).increment();
+        }
+
+        ClickTimeSeries.Point toPoint(long bucketStart) {
+            return new ClickTimeSeries.Point(bucketStart, clicks.sum(), sums(referrers), sums(userAgents), sums(geoLocations));
+        }
+
+        private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+            Map<String, Long> sums = new HashMap<>();
+            counters.forEach((key, counter) -> sums.put(key, counter.sum()));
+            return sums;
+        }
+    }
+}
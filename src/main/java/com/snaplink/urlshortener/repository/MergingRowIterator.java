@@ -0,0 +1,89 @@
+package com.snaplink.urlshortener.repository;
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.data.v2.models.Row;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * Lazily merges several sorted Bigtable row streams into one sorted sequence.
+ * Only the head row of each stream is held in memory, so merging the bucket ranges
+ * of a link's clicks uses constant memory regardless of how many clicks there are.
+ */
+class MergingRowIterator implements Iterator<Row>, AutoCloseable {
+
+    private final List<ServerStream<Row>> streams;
+    private final PriorityQueue<Head> heads;
+
+    /**
+     * @param streams The streams to merge; each must already be sorted by {@code sortKey}
+     * @param sortKey Extracts the comparable part of a row key
+     */
+    MergingRowIterator(List<ServerStream<Row>> streams, Function<String, String> sortKey) {
+        this.streams = streams;
+        this.heads = new PriorityQueue<>(Math.max(1, streams.size()),
+                Comparator.comparing((Head head) -> head.sortKey));
+        for (ServerStream<Row> stream : streams) {
+            Iterator<Row> iterator = stream.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator, sortKey));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !heads.isEmpty();
+    }
+
+    @Override
+    public Row next() {
+        Head head = heads.poll();
+        if (head == null) {
+            throw new NoSuchElementException();
+        }
+        Row row = head.row;
+        if (head.advance()) {
+            heads.add(head);
+        }
+        return row;
+    }
+
+    /**
+     * Cancels any streams that have not been read to the end.
+     */
+    @Override
+    public void close() {
+        for (ServerStream<Row> stream : streams) {
+            stream.cancel();
+        }
+        heads.clear();
+    }
+
+    private static final class Head {
+        private final Iterator<Row> iterator;
+        private final Function<String, String> sortKeyFn;
+        private Row row;
+        private String sortKey;
+
+        Head(Iterator<Row> iterator, Function<String, String> sortKeyFn) {
+            this.iterator = iterator;
+            this.sortKeyFn = sortKeyFn;
+            advance();
+        }
+
+        boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            row = iterator.next();
+            sortKey = sortKeyFn.apply(row.getKey().toStringUtf8());
+            return true;
+        }
+    }
+}
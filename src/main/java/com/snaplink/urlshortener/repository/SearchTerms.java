@@ -0,0 +1,76 @@
+package com.snaplink.urlshortener.repository;
+
+import com.snaplink.urlshortener.model.ShortUrl;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Text normalization and trigram extraction for the per-user link search index.
+ * Indexed text is lower-cased, loses its URL scheme and a leading "www.", is capped in
+ * length, and is padded at the end so one- and two-character queries can be answered
+ * with a prefix scan over trigrams.
+ */
+public final class SearchTerms {
+    // Upper bound on indexed characters per field, which bounds index rows per link
+    static final int MAX_INDEXED_CHARS = 256;
+    // Upper bound on trigrams looked up per query; the rest are checked on the candidate rows
+    static final int MAX_QUERY_TRIGRAMS = 6;
+
+    private static final String END_PADDING = "\u0001\u0001";
+
+    private SearchTerms() {}
+
+    /**
+     * Normalizes indexed text and queries alike, so both compare in the same form.
+     */
+    public static String normalize(String text) {
+        if (text == null) return "";
+        String normalized = text.trim().toLowerCase(Locale.ROOT);
+        if (normalized.startsWith("https://")) {
+            normalized = normalized.substring("https://".length());
+        } else if (normalized.startsWith("http://")) {
+            normalized = normalized.substring("http://".length());
+        }
+        if (normalized.startsWith("www.")) {
+            normalized = normalized.substring("www.".length());
+        }
+        return normalized.length() > MAX_INDEXED_CHARS ? normalized.substring(0, MAX_INDEXED_CHARS) : normalized;
+    }
+
+    // Distinct trigrams of the short code, alias and long URL of a link
+    static Set<String> indexTrigrams(ShortUrl url) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        addTrigrams(trigrams, normalize(url.getShortCode()) + END_PADDING);
+        if (url.getCustomAlias() != null && !url.getCustomAlias().equals(url.getShortCode())) {
+            addTrigrams(trigrams, normalize(url.getCustomAlias()) + END_PADDING);
+        }
+        addTrigrams(trigrams, normalize(url.getLongUrl()) + END_PADDING);
+        return trigrams;
+    }
+
+    /**
+     * Picks the trigrams to look up for a normalized query of at least three characters:
+     * non-overlapping ones from the start plus the last one, so the whole query is covered.
+     */
+    static List<String> queryTrigrams(String query) {
+        List<String> picked = new ArrayList<>();
+        for (int i = 0; i + 3 <= query.length() && picked.size() < MAX_QUERY_TRIGRAMS - 1; i += 3) {
+            picked.add(query.substring(i, i + 3));
+        }
+        String last = query.substring(query.length() - 3);
+        if (!picked.contains(last)) {
+            picked.add(last);
+        }
+        return picked;
+    }
+
+    private static void addTrigrams(Set<String> trigrams, String text) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            trigrams.add(text.substring(i, i + 3));
+        }
+    }
+}
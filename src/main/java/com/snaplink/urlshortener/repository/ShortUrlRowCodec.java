@@ -0,0 +1,183 @@
+package com.snaplink.urlshortener.repository;
+
+import com.google.cloud.bigtable.data.v2.models.Mutation;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import com.snaplink.urlshortener.model.ShortUrl;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes url#<code> rows of url_tracking in one of two layouts.
+ * <p>
+ * The legacy layout stores each field as its own string cell. The compact layout stores
+ * one {@code url_info:record} cell:
+ * <pre>
+ * version (1 byte) | flags (1 byte) | creation millis (8) | expiration millis (8)
+ *   | long URL length (varint) | long URL (UTF-8) | user ID length (varint) | user ID (UTF-8)
+ * </pre>
+ * {@code url_info:is_active} stays a separate string cell in both layouts so it can be
+ * flipped with a single conditional mutation. Renamed links also carry a separate
+ * {@code url_info:analytics_key} cell naming the code their clicks are recorded under.
+ * The reader accepts either layout, so rows can be migrated while the application is serving.
+ */
+public final class ShortUrlRowCodec {
+
+    /**
+     * Which layout new url rows are written with.
+     */
+    public enum Encoding { LEGACY, COMPACT }
+
+    static final String RECORD_QUALIFIER = "record";
+    static final String ANALYTICS_KEY_QUALIFIER = "analytics_key";
+    static final String[][] LEGACY_COLUMNS = {
+            {"url_info", "long_url"}, {"url_info", "creation_date"}, {"url_info", "expiration_date"},
+            {"url_info", "one_time"}, {"user_info", "user_id"}
+    };
+
+    private static final byte VERSION = 1;
+    private static final int FLAG_ONE_TIME = 1;
+    private static final int FLAG_HAS_EXPIRATION = 1 << 1;
+    private static final int HEADER_BYTES = 18;
+
+    private ShortUrlRowCodec() {}
+
+    /**
+     * Adds the cells of a link to a mutation in the given layout. Falls back to the legacy
+     * layout for links whose dates cannot be represented as epoch milliseconds.
+     */
+    static Mutation write(Mutation mutation, ShortUrl url, Encoding encoding) {
+        ByteString record = encoding == Encoding.COMPACT ? encode(url) : null;
+        if (record != null) {
+            mutation.setCell("url_info", ByteString.copyFromUtf8(RECORD_QUALIFIER), record);
+        } else {
+            mutation.setCell("url_info", "long_url", url.getLongUrl())
+                    .setCell("url_info", "creation_date", url.getCreationDate())
+                    .setCell("url_info", "expiration_date", url.getExpirationDate())
+                    .setCell("url_info", "one_time", String.valueOf(url.isOneTime()))
+                    .setCell("user_info", "user_id", url.getUserId());
+        }
+        if (!url.getAnalyticsKey().equals(url.getShortCode())) {
+            mutation.setCell("url_info", ANALYTICS_KEY_QUALIFIER, url.getAnalyticsKey());
+        }
+        return mutation.setCell("url_info", "is_active", String.valueOf(url.isActive()));
+    }
+
+    /**
+     * Encodes a link into a compact record.
+     *
+     * @return The record, or null if a date cannot be represented in epoch milliseconds
+     */
+    static ByteString encode(ShortUrl url) {
+        Long creation = ShortUrl.parseEpochMillis(url.getCreationDate());
+        if (creation == null) return null;
+        boolean hasExpiration = url.getExpirationDate() != null && !url.getExpirationDate().isEmpty();
+        Long expiration = hasExpiration ? ShortUrl.parseEpochMillis(url.getExpirationDate()) : Long.valueOf(0L);
+        if (expiration == null) return null;
+
+        byte[] longUrl = url.getLongUrl().getBytes(StandardCharsets.UTF_8);
+        byte[] userId = url.getUserId().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES
+                + varIntSize(longUrl.length) + longUrl.length + varIntSize(userId.length) + userId.length);
+        buffer.put(VERSION);
+        buffer.put((byte) ((url.isOneTime() ? FLAG_ONE_TIME : 0) | (hasExpiration ? FLAG_HAS_EXPIRATION : 0)));
+        buffer.putLong(creation);
+        buffer.putLong(expiration);
+        putVarInt(buffer, longUrl.length);
+        buffer.put(longUrl);
+        putVarInt(buffer, userId.length);
+        buffer.put(userId);
+        return ByteString.copyFrom(buffer.array());
+    }
+
+    /**
+     * Maps a url#<code> row in either layout to a ShortUrl.
+     * The row may come from a projection read; fields whose cells were not returned are null.
+     */
+    static ShortUrl decode(Row row) {
+        String shortCode = row.getKey().toStringUtf8().split("#", 2)[1];
+        List<RowCell> active = row.getCells("url_info", "is_active");
+        boolean isActive = !active.isEmpty() && Boolean.parseBoolean(active.get(0).getValue().toStringUtf8());
+
+        String analyticsKey = cellValue(row, "url_info", ANALYTICS_KEY_QUALIFIER);
+
+        List<RowCell> record = row.getCells("url_info", RECORD_QUALIFIER);
+        if (!record.isEmpty()) {
+            ShortUrl url = decodeRecord(shortCode, record.get(0).getValue(), isActive);
+            url.setAnalyticsKey(analyticsKey);
+            return url;
+        }
+
+        // Columns left out by a projection read stay null
+        String longUrl = cellValue(row, "url_info", "long_url");
+        String userId = cellValue(row, "user_info", "user_id");
+        String creationDate = cellValue(row, "url_info", "creation_date");
+        String expirationDate = cellValue(row, "url_info", "expiration_date");
+        boolean oneTime = Boolean.parseBoolean(cellValue(row, "url_info", "one_time"));
+
+        ShortUrl url = new ShortUrl(shortCode, longUrl, userId, creationDate, expirationDate, oneTime, isActive, shortCode);
+        url.setAnalyticsKey(analyticsKey);
+        return url;
+    }
+
+    /**
+     * Returns whether a row is stored in the compact layout.
+     */
+    static boolean isCompact(Row row) {
+        return !row.getCells("url_info", RECORD_QUALIFIER).isEmpty();
+    }
+
+    static ShortUrl decodeRecord(String shortCode, ByteString value, boolean isActive) {
+        byte[] bytes = value.toByteArray();
+        if (bytes.length < HEADER_BYTES || bytes[0] != VERSION) {
+            throw new IllegalStateException("Unsupported url record version for " + shortCode);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.get();
+        int flags = buffer.get();
+        long creation = buffer.getLong();
+        long expiration = buffer.getLong();
+        int longUrlLength = getVarInt(buffer);
+        String longUrl = new String(bytes, buffer.position(), longUrlLength, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + longUrlLength);
+        int userIdLength = getVarInt(buffer);
+        String userId = new String(bytes, buffer.position(), userIdLength, StandardCharsets.UTF_8);
+
+        // Date strings are only built if the link is serialized, never on the redirect path
+        long expirationMillis = (flags & FLAG_HAS_EXPIRATION) != 0 ? expiration : Long.MAX_VALUE;
+        return ShortUrl.fromEpochMillis(shortCode, longUrl, userId, creation, expirationMillis,
+                (flags & FLAG_ONE_TIME) != 0, isActive, shortCode);
+    }
+
+    private static String cellValue(Row row, String family, String qualifier) {
+        List<RowCell> cells = row.getCells(family, qualifier);
+        return cells.isEmpty() ? null : cells.get(0).getValue().toStringUtf8();
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IllegalStateException("Malformed varint in url record");
+    }
+}
@@ -0,0 +1,189 @@
+package com.snaplink.urlshortener.repository;
+
+import com.snaplink.urlshortener.model.CursorPage;
+import com.snaplink.urlshortener.model.ShortUrl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Storage of short links, their per-user listing and search index, and the short code ID sequence.
+ */
+public interface UrlStore extends IdRangeLeaser {
+
+    /**
+     * Creates a link only if its short code is not taken yet. A code that a renamed link still
+     * records its clicks under counts as taken, so no other link inherits that click history.
+     *
+     * @return true if the link was created, false if the short code already exists or is retired
+     */
+    boolean createShortUrl(ShortUrl url);
+
+    /**
+     * Creates many links, each only if its short code is not taken yet. Links whose codes
+     * collide, with existing links or with each other, are not created.
+     *
+     * @return For each link in order, whether it was created
+     */
+    List<Boolean> createShortUrls(List<ShortUrl> urls);
+
+    /**
+     * Returns the first ID the next {@link #leaseRange(long)} call would hand out, without leasing.
+     *
+     * @return The current end of the leased ID space
+     */
+    long peekSequence();
+
+    /**
+     * Records that an application instance is alive and counts the instances that did so
+     * within {@code ttlMillis}. Entries of instances that stopped reporting are removed.
+     *
+     * @param instanceId Identifies the calling instance for its lifetime
+     * @param ttlMillis How long a report counts
+     * @return The number of live instances, the caller included
+     */
+    int heartbeat(String instanceId, long ttlMillis);
+
+    /**
+     * Journals custom short codes before they are created, so that other instances can learn
+     * of them by polling instead of looking up every unknown code.
+     *
+     * @param shortCodes The codes about to be created
+     */
+    void announceShortCodes(Collection<String> shortCodes);
+
+    /**
+     * Passes every code announced at or after {@code sinceMillis} to {@code action}.
+     */
+    void forEachAnnouncedShortCode(long sinceMillis, Consumer<String> action);
+
+    /**
+     * Removes the journal entries of codes announced before {@code beforeMillis}.
+     */
+    void deleteAnnouncementsBefore(long beforeMillis);
+
+    /**
+     * Reads a link with all of its fields.
+     *
+     * @return The link, or null if it does not exist
+     */
+    ShortUrl getShortUrl(String shortCode);
+
+    /**
+     * Reads only what the redirect path needs; other fields may be null.
+     *
+     * @return The link, or null if it does not exist
+     */
+    ShortUrl getShortUrlForRedirect(String shortCode);
+
+    /**
+     * Non-blocking {@link #getShortUrlForRedirect(String)}. The future may complete on a
+     * storage client thread, so dependent stages must not block.
+     *
+     * @return A future of the link, or of null if it does not exist
+     */
+    CompletableFuture<ShortUrl> getShortUrlForRedirectAsync(String shortCode);
+
+    /**
+     * Deletes a link together with its listing and search entries.
+     */
+    void deleteShortUrl(String shortCode);
+
+    /**
+     * Deletes several links, as read from storage, together with their listing and search entries.
+     * The listing entries go last, so a deletion that fails partway still lists the links it missed.
+     */
+    void deleteShortUrls(List<ShortUrl> urls);
+
+    /**
+     * Returns links of a user that storage still knows but that are missing from the user's
+     * listing, for example because indexing a new link failed halfway.
+     */
+    List<ShortUrl> getUnlistedUrlsByUserId(String userId);
+
+    /**
+     * Deletes whatever listing and search entries are left under a user, such as entries of
+     * links that are already gone.
+     *
+     * @return The number of entries deleted
+     */
+    long deleteIndexRowsOfUser(String userId);
+
+    /**
+     * Moves a link to a new short code. Safe under concurrent renames and creates: the new code
+     * is reserved atomically, and two renames of the same link cannot both succeed. The click
+     * history stays where it is; the renamed link keeps the old link's analytics key, and that
+     * key is retired so the old code can never be created again.
+     *
+     * @return The renamed link
+     * @throws IllegalArgumentException if the old code does not exist or the new code is taken
+     */
+    ShortUrl renameShortUrl(String oldCode, String newCode);
+
+    /**
+     * Returns all links of a user, newest first.
+     */
+    List<ShortUrl> getAllUrlsByUserId(String userId);
+
+    /**
+     * Returns one page of a user's links, newest first.
+     *
+     * @param cursor The cursor returned with the previous page, or null for the first page
+     * @throws IllegalArgumentException if the cursor is malformed or belongs to another user
+     */
+    CursorPage<ShortUrl> getUrlsByUserIdPage(String userId, int limit, String cursor);
+
+    /**
+     * Reads several links at once.
+     *
+     * @return The links that exist, in the order of the given codes
+     */
+    List<ShortUrl> getShortUrls(List<String> shortCodes);
+
+    /**
+     * Returns short codes of a user's links that may contain {@code query}.
+     * Candidates must still be checked against the link text.
+     *
+     * @param query The query, already normalized with {@link SearchTerms#normalize}
+     * @param maxPerTerm Upper bound on index entries read per search term
+     */
+    Set<String> findSearchCandidates(String userId, String query, int maxPerTerm);
+
+    /**
+     * Passes every existing short code to {@code action}.
+     */
+    void forEachShortCode(Consumer<String> action);
+
+    /**
+     * Passes every existing link to {@code action}, read with the redirect projection.
+     */
+    void forEachShortUrl(Consumer<ShortUrl> action);
+
+    boolean existsByShortCode(String shortCode);
+
+    /**
+     * Atomically marks an active link inactive.
+     *
+     * @return true for exactly one caller per link; false if the link is missing or already inactive
+     */
+    boolean consumeOneTimeLink(String shortCode);
+
+    /**
+     * Non-blocking {@link #consumeOneTimeLink(String)}, with the same exactly-once guarantee.
+     */
+    CompletableFuture<Boolean> consumeOneTimeLinkAsync(String shortCode);
+
+    /**
+     * Marks links whose expiration time has passed as inactive, oldest first, reading only
+     * the part of the expiry index that is due. Processed index entries are removed, so the
+     * cost of a call depends on the number of expiring links, not on the number of links.
+     *
+     * @param nowMillis The current time, epoch milliseconds
+     * @param limit Maximum number of index entries processed
+     * @return The short codes that were active and are now deactivated
+     */
+    List<String> deactivateExpired(long nowMillis, int limit);
+}
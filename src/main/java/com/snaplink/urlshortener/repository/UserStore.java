@@ -0,0 +1,57 @@
+package com.snaplink.urlshortener.repository;
+
+import com.snaplink.urlshortener.model.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Storage of user accounts, their email/username lookups and password-reset tokens.
+ */
+public interface UserStore {
+
+    /**
+     * Creates a user unless its email or username is already taken.
+     *
+     * @return true if the user was created, false if the email or username is taken
+     */
+    boolean createUser(User user);
+
+    List<User> getUsers();
+
+    Optional<User> findById(String id);
+
+    /**
+     * Writes the password and reset-token fields of a user, and the token lookup if a token is set.
+     */
+    void updateUser(User user);
+
+    /**
+     * Removes the lookup of a reset token once it has been used.
+     */
+    void deleteResetToken(String token);
+
+    /**
+     * Deletes reset-token lookups that expired before the given time.
+     *
+     * @return The number of lookups removed
+     */
+    int purgeExpiredResetTokens(LocalDateTime now);
+
+    /**
+     * Deletes the user registered under this email together with its lookups.
+     */
+    void deleteUserByRowKey(String email);
+
+    Optional<User> findByEmail(String email);
+
+    boolean existsByUsername(String username);
+
+    boolean existsByEmail(String email);
+
+    /**
+     * Returns the user whose current reset token is {@code token}.
+     */
+    Optional<User> findByResetToken(String token);
+}
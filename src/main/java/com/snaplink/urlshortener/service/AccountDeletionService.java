@@ -0,0 +1,176 @@
+package com.snaplink.urlshortener.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.snaplink.urlshortener.model.AccountDeletionStatus;
+import com.snaplink.urlshortener.model.AccountDeletionStatus.State;
+import com.snaplink.urlshortener.model.CursorPage;
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.model.User;
+import com.snaplink.urlshortener.repository.ClickStore;
+import com.snaplink.urlshortener.repository.UrlStore;
+import com.snaplink.urlshortener.repository.UserStore;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Deletes user accounts together with everything they own, in the background.
+ * <p>
+ * A job pages through the user's links with the per-user index, {@code batch-size} links
+ * at a time. For each page it deletes the links' clicks, counters and rollups, then the
+ * links and their index rows, then evicts them from the caches. A link's per-user index row
+ * is deleted last, so a failed page is listed again when the job is started again.
+ * Links missing from the per-user index but still known to the search index are then
+ * deleted the same way, and the index rows still left under the user are swept.
+ * <p>
+ * The user record and its username and email reservations go last, the email reservation
+ * at the very end: while it exists the job can be started again, even if the user record
+ * is already gone. Memory use is bounded by one page of links and the bulk mutation
+ * batcher, whatever the size of the account's click history.
+ * <p>
+ * Job status is kept on the instance that runs the job for {@code status-retention-minutes}.
+ */
+@Service
+public class AccountDeletionService {
+    private static final Logger logger = LoggerFactory.getLogger(AccountDeletionService.class);
+
+    private final UserStore userStore;
+    private final UrlStore urlStore;
+    private final ClickStore clickStore;
+    private final ShortUrlCache shortUrlCache;
+    private final HotLinkTable hotLinkTable;
+    private final int batchSize;
+    private final ExecutorService executor;
+    private final Cache<String, AccountDeletionStatus> statuses;
+
+    public AccountDeletionService(
+            UserStore userStore,
+            UrlStore urlStore,
+            ClickStore clickStore,
+            ShortUrlCache shortUrlCache,
+            HotLinkTable hotLinkTable,
+            @Value("${app.account-deletion.batch-size:100}") int batchSize,
+            @Value("${app.account-deletion.workers:1}") int workers,
+            @Value("${app.account-deletion.status-retention-minutes:60}") long statusRetentionMinutes
+    ) {
+        this.userStore = userStore;
+        this.urlStore = urlStore;
+        this.clickStore = clickStore;
+        this.shortUrlCache = shortUrlCache;
+        this.hotLinkTable = hotLinkTable;
+        this.batchSize = batchSize;
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "account-deletion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.statuses = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(statusRetentionMinutes))
+                .build();
+    }
+
+    /**
+     * Starts deleting an account unless a deletion of it is already running.
+     *
+     * @param email The email the account is registered under
+     * @return The status of the new or already running job, or empty if no such user exists
+     */
+    public Optional<AccountDeletionStatus> startDeletion(String email) {
+        Optional<User> user = userStore.findByEmail(email);
+        // Without a user record, an email reservation is left over from a deletion that failed at its last step
+        if (user.isEmpty() && !userStore.existsByEmail(email)) return Optional.empty();
+
+        AccountDeletionStatus started = new AccountDeletionStatus(
+                email, State.RUNNING, 0, 0, Instant.now().toString(), null, null);
+        AccountDeletionStatus current = statuses.asMap().merge(email, started,
+                (previous, fresh) -> previous.getState() == State.RUNNING ? previous : fresh);
+        if (current == started) {
+            try {
+                executor.execute(() -> run(user.orElse(null), started));
+            } catch (RejectedExecutionException e) {
+                statuses.put(email, finished(started, State.FAILED, "Shutting down"));
+            }
+        }
+        return Optional.ofNullable(statuses.getIfPresent(email));
+    }
+
+    /**
+     * Returns the status of the latest deletion of an account started on this instance.
+     *
+     * @param email The email the account is registered under
+     * @return The status, or empty if no deletion is known
+     */
+    public Optional<AccountDeletionStatus> getStatus(String email) {
+        return Optional.ofNullable(statuses.getIfPresent(email));
+    }
+
+    // user is null when only the email reservation of an earlier deletion is left
+    private void run(User user, AccountDeletionStatus started) {
+        String email = started.getEmail();
+        AccountDeletionStatus progress = started;
+        try {
+            if (user != null) {
+                String cursor = null;
+                do {
+                    CursorPage<ShortUrl> page = urlStore.getUrlsByUserIdPage(user.getId(), batchSize, cursor);
+                    progress = deleteLinks(page.getItems(), progress);
+                    cursor = page.getNextCursor();
+                } while (cursor != null);
+
+                List<ShortUrl> unlisted = urlStore.getUnlistedUrlsByUserId(user.getId());
+                for (int from = 0; from < unlisted.size(); from += batchSize) {
+                    progress = deleteLinks(unlisted.subList(from, Math.min(from + batchSize, unlisted.size())), progress);
+                }
+                urlStore.deleteIndexRowsOfUser(user.getId());
+            }
+
+            userStore.deleteUserByRowKey(email);
+            statuses.put(email, finished(progress, State.COMPLETED, null));
+            logger.info("Deleted account {} with {} links and {} click rows",
+                    email, progress.getLinksDeleted(), progress.getClickRowsDeleted());
+        } catch (RuntimeException e) {
+            logger.warn("Deleting account {} failed after {} links", email, progress.getLinksDeleted(), e);
+            statuses.put(email, finished(progress, State.FAILED, e.getMessage()));
+        }
+    }
+
+    // Deletes one batch of links with their clicks and returns the updated, published progress
+    private AccountDeletionStatus deleteLinks(List<ShortUrl> urls, AccountDeletionStatus progress) {
+        // Clicks go first: a failure then leaves the links listed, and a re-run finds them again
+        long clickRows = clickStore.deleteClickData(
+                urls.stream().map(ShortUrl::getAnalyticsKey).distinct().collect(Collectors.toList()));
+        urlStore.deleteShortUrls(urls);
+        for (ShortUrl url : urls) {
+            shortUrlCache.invalidate(url.getShortCode());
+            hotLinkTable.remove(url.getShortCode());
+        }
+        AccountDeletionStatus next = new AccountDeletionStatus(progress.getEmail(), State.RUNNING,
+                progress.getLinksDeleted() + urls.size(), progress.getClickRowsDeleted() + clickRows,
+                progress.getStartedAt(), null, null);
+        statuses.put(progress.getEmail(), next);
+        return next;
+    }
+
+    private static AccountDeletionStatus finished(AccountDeletionStatus status, State state, String error) {
+        return new AccountDeletionStatus(status.getEmail(), state, status.getLinksDeleted(),
+                status.getClickRowsDeleted(), status.getStartedAt(), Instant.now().toString(), error);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        // Running jobs stop at their next Bigtable call; the email reservation is still there, so they can be restarted
+        executor.shutdownNow();
+    }
+}
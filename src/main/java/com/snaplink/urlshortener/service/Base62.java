@@ -0,0 +1,81 @@
+package com.snaplink.urlshortener.service;
+
+/**
+ * Base62 encoding of non-negative longs using the characters 0-9, a-z and A-Z.
+ */
+public final class Base62 {
+    private static final char[] ALPHABET =
+            "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ".toCharArray();
+    private static final int BASE = ALPHABET.length;
+
+    private Base62() {}
+
+    /**
+     * Encodes a non-negative value.
+     *
+     * @param value The value to encode
+     * @return The base62 representation
+     */
+    public static String encode(long value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must be non-negative: " + value);
+        }
+        // 11 digits cover Long.MAX_VALUE
+        char[] buf = new char[11];
+        int pos = buf.length;
+        do {
+            buf[--pos] = ALPHABET[(int) (value % BASE)];
+            value /= BASE;
+        } while (value > 0);
+        return new String(buf, pos, buf.length - pos);
+    }
+
+    /**
+     * Decodes a base62 string produced by {@link #encode(long)}.
+     *
+     * @param encoded The base62 string
+     * @return The decoded value
+     */
+    public static long decode(String encoded) {
+        long value = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            value = value * BASE + digit(encoded.charAt(i));
+        }
+        return value;
+    }
+
+    /**
+     * Tells whether a string consists of base62 characters only.
+     *
+     * @param text The string to check
+     * @return True if every character is in the base62 alphabet
+     */
+    public static boolean isEncoded(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the smallest value whose encoding has the given number of characters.
+     *
+     * @param length The encoded length
+     * @return {@code 62^(length - 1)}, or 0 for length 1
+     */
+    public static long minValueForLength(int length) {
+        long value = 1;
+        for (int i = 1; i < length; i++) {
+            value *= BASE;
+        }
+        return length <= 1 ? 0 : value;
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'z') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'Z') return c - 'A' + 36;
+        throw new IllegalArgumentException("Not a base62 character: " + c);
+    }
+}
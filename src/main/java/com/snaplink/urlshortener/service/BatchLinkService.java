@@ -0,0 +1,188 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.BatchLinkResult;
+import com.snaplink.urlshortener.model.BatchLinkResult.Status;
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.repository.UrlStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Creates links in bulk for {@code POST /shorten/batch}.
+ * <p>
+ * Link specs are consumed from an iterator in chunks of {@code chunk-size}, and each chunk is
+ * written with {@link UrlStore#createShortUrls(List)}, so a request of any size costs a few
+ * storage round trips per chunk and only one chunk is held in memory at a time. Results are
+ * handed to the caller as soon as their chunk is written.
+ */
+@Service
+public class BatchLinkService {
+
+    private static final int MAX_GENERATE_ATTEMPTS = 5;
+
+    private final UrlStore urlStore;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final ShortCodeFilter shortCodeFilter;
+    private final ShortUrlCache shortUrlCache;
+    private final ExpiryPolicy expiryPolicy;
+    private final int chunkSize;
+    private final int maxLinks;
+
+    public BatchLinkService(
+            UrlStore urlStore,
+            ShortCodeGenerator shortCodeGenerator,
+            ShortCodeFilter shortCodeFilter,
+            ShortUrlCache shortUrlCache,
+            ExpiryPolicy expiryPolicy,
+            @Value("${app.batch-links.chunk-size:500}") int chunkSize,
+            @Value("${app.batch-links.max-links:50000}") int maxLinks
+    ) {
+        this.urlStore = urlStore;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.shortCodeFilter = shortCodeFilter;
+        this.shortUrlCache = shortUrlCache;
+        this.expiryPolicy = expiryPolicy;
+        this.chunkSize = chunkSize;
+        this.maxLinks = maxLinks;
+    }
+
+    /**
+     * Creates every link read from {@code specs}. A spec is a ShortUrl with a long URL, a user
+     * ID and optionally a custom alias, one-time flag and expiration date, as for
+     * {@code POST /shorten}. Reading stops at the first unreadable spec or after
+     * {@code max-links} specs; a final REJECTED result then reports where the batch was cut off.
+     *
+     * @param specs The link specs in request order
+     * @param results Receives one result per link, in request order
+     */
+    public void createAll(Iterator<ShortUrl> specs, Consumer<BatchLinkResult> results) {
+        // Owners' plans are looked up once per batch, not once per link
+        Map<String, String> plans = new HashMap<>();
+        // Aliases claimed earlier in this batch; bounded by max-links
+        Set<String> aliases = new HashSet<>();
+        List<ShortUrl> chunk = new ArrayList<>(chunkSize);
+        int index = 0;
+        String rejection = null;
+        while (rejection == null) {
+            ShortUrl spec;
+            try {
+                if (!specs.hasNext()) break;
+                if (index >= maxLinks) {
+                    rejection = "Batches are limited to " + maxLinks + " links";
+                    break;
+                }
+                spec = specs.next();
+            } catch (RuntimeException e) {
+                // Unreadable input ends the batch; links read before it are still created
+                rejection = "Unreadable link spec: " + e.getMessage();
+                break;
+            }
+            chunk.add(spec);
+            index++;
+            if (chunk.size() >= chunkSize) {
+                flush(chunk, index, plans, aliases, results);
+            }
+        }
+        flush(chunk, index, plans, aliases, results);
+        if (rejection != null) {
+            results.accept(BatchLinkResult.failed(index, Status.REJECTED, rejection));
+        }
+    }
+
+    // Creates the links of one chunk; end is the batch index just past its last link
+    private void flush(List<ShortUrl> chunk, int end, Map<String, String> plans, Set<String> aliases,
+                       Consumer<BatchLinkResult> results) {
+        if (chunk.isEmpty()) return;
+        int start = end - chunk.size();
+        BatchLinkResult[] outcomes = new BatchLinkResult[chunk.size()];
+        long nowMillis = Instant.now().toEpochMilli();
+        String creationDate = Instant.ofEpochMilli(nowMillis).toString();
+
+        List<Integer> positions = new ArrayList<>();
+        List<ShortUrl> pending = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            ShortUrl spec = chunk.get(i);
+            if (spec == null || spec.getLongUrl() == null || spec.getUserId() == null) {
+                outcomes[i] = BatchLinkResult.failed(start + i, Status.INVALID, "longUrl and userId are required");
+                continue;
+            }
+            String expirationDate;
+            try {
+                expirationDate = expiryPolicy.expirationFor(spec.getUserId(), spec.getExpirationDate(), nowMillis, plans);
+            } catch (IllegalArgumentException e) {
+                outcomes[i] = BatchLinkResult.failed(start + i, Status.INVALID, e.getMessage());
+                continue;
+            }
+            String alias = spec.getCustomAlias();
+            boolean custom = alias != null && !alias.isEmpty();
+            if (custom && shortCodeFilter.isReservedForGeneratedCodes(alias)) {
+                outcomes[i] = BatchLinkResult.failed(start + i, Status.INVALID,
+                        "Short code '" + alias + "' is reserved for generated links.");
+                continue;
+            }
+            if (custom && !aliases.add(alias)) {
+                outcomes[i] = BatchLinkResult.failed(start + i, Status.CONFLICT,
+                        "Short code '" + alias + "' is already in use.");
+                continue;
+            }
+            String shortCode = custom ? alias : shortCodeGenerator.nextCode();
+            positions.add(i);
+            pending.add(new ShortUrl(shortCode, spec.getLongUrl(), spec.getUserId(), creationDate, expirationDate,
+                    spec.isOneTime(), true, shortCode));
+        }
+
+        List<String> customCodes = new ArrayList<>();
+        for (int i : positions) {
+            String alias = chunk.get(i).getCustomAlias();
+            if (alias != null && !alias.isEmpty()) customCodes.add(alias);
+        }
+        long visibleAt = shortCodeFilter.announce(customCodes);
+
+        // Generated codes are unique; they are only retried if a custom alias already took them
+        for (int attempt = 0; attempt < MAX_GENERATE_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            List<Boolean> created = urlStore.createShortUrls(pending);
+            List<Integer> retryPositions = new ArrayList<>();
+            List<ShortUrl> retry = new ArrayList<>();
+            for (int j = 0; j < pending.size(); j++) {
+                ShortUrl url = pending.get(j);
+                int i = positions.get(j);
+                String alias = chunk.get(i).getCustomAlias();
+                if (created.get(j)) {
+                    shortCodeFilter.add(url.getShortCode());
+                    // Not put in the hot link table: bulk-created links reach it through redirects
+                    shortUrlCache.invalidate(url.getShortCode());
+                    outcomes[i] = BatchLinkResult.created(start + i, url);
+                } else if (alias != null && !alias.isEmpty()) {
+                    outcomes[i] = BatchLinkResult.failed(start + i, Status.CONFLICT,
+                            "Short code '" + alias + "' is already in use.");
+                } else {
+                    String shortCode = shortCodeGenerator.nextCode();
+                    retryPositions.add(i);
+                    retry.add(new ShortUrl(shortCode, url.getLongUrl(), url.getUserId(), url.getCreationDate(),
+                            url.getExpirationDate(), url.isOneTime(), true, shortCode));
+                }
+            }
+            positions = retryPositions;
+            pending = retry;
+        }
+        for (int i : positions) {
+            outcomes[i] = BatchLinkResult.failed(start + i, Status.CONFLICT, "Could not allocate a free short code.");
+        }
+
+        shortCodeFilter.awaitAnnounced(visibleAt);
+        for (BatchLinkResult outcome : outcomes) {
+            results.accept(outcome);
+        }
+        chunk.clear();
+    }
+}
@@ -0,0 +1,156 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.ClickTimeSeries;
+import com.snaplink.urlshortener.model.CursorPage;
+import com.snaplink.urlshortener.model.RollupGranularity;
+import com.snaplink.urlshortener.repository.ClickStore;
+import com.snaplink.urlshortener.repository.ClickDetailsStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Serves click analytics: aggregate time series from the minute/hour/day rollup rows
+ * maintained by the click pipeline, and paged or streamed click-level details read
+ * lazily from Bigtable.
+ */
+@Service
+public class ClickAnalyticsService {
+
+    private final ClickStore clickStore;
+    private final int maxPoints;
+    private final int topK;
+    private final int maxPageSize;
+
+    public ClickAnalyticsService(
+            ClickStore clickStore,
+            @Value("${app.analytics.max-points:5000}") int maxPoints,
+            @Value("${app.analytics.top-k:5}") int topK,
+            @Value("${app.analytics.max-details-page-size:1000}") int maxPageSize
+    ) {
+        this.clickStore = clickStore;
+        this.maxPoints = maxPoints;
+        this.topK = topK;
+        this.maxPageSize = maxPageSize;
+    }
+
+    /**
+     * Returns the click time series of a link over a time range.
+     * Buckets without clicks are omitted from the points.
+     *
+     * @param shortCode The link to report on
+     * @param granularity The bucket size
+     * @param fromMillis Start of the range (inclusive), epoch milliseconds
+     * @param toMillis End of the range (inclusive), epoch milliseconds
+     * @return The time series with range totals and top dimension values
+     * @throws IllegalArgumentException if the range is inverted or spans too many buckets
+     */
+    public ClickTimeSeries getTimeSeries(String shortCode, RollupGranularity granularity, long fromMillis, long toMillis) {
+        if (toMillis < fromMillis) {
+            throw new IllegalArgumentException("Range end is before its start");
+        }
+        long buckets = (granularity.bucketStart(toMillis) - granularity.bucketStart(fromMillis)) / granularity.getMillis() + 1;
+        if (buckets > maxPoints) {
+            throw new IllegalArgumentException("Range spans " + buckets + " " + granularity
+                    + " buckets; use a coarser granularity or at most " + maxPoints + " buckets");
+        }
+
+        List<ClickTimeSeries.Point> points = clickStore.getClickRollups(shortCode, granularity, fromMillis, toMillis);
+
+        long total = 0;
+        Map<String, Long> referrers = new HashMap<>();
+        Map<String, Long> userAgents = new HashMap<>();
+        Map<String, Long> geoLocations = new HashMap<>();
+        for (ClickTimeSeries.Point point : points) {
+            total += point.getClicks();
+            point.getReferrers().forEach((k, v) -> referrers.merge(k, v, Long::sum));
+            point.getUserAgents().forEach((k, v) -> userAgents.merge(k, v, Long::sum));
+            point.getGeoLocations().forEach((k, v) -> geoLocations.merge(k, v, Long::sum));
+        }
+
+        return new ClickTimeSeries(shortCode, granularity, total,
+                top(referrers), top(userAgents), top(geoLocations), points);
+    }
+
+    /**
+     * Parses a comma-separated field list for click details.
+     *
+     * @param fields Field names, or null/empty for all fields
+     * @return The selected fields
+     * @throws IllegalArgumentException if a field is unknown
+     */
+    public Set<String> parseFields(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return new LinkedHashSet<>(ClickDetailsStream.FIELDS);
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (!ClickDetailsStream.FIELDS.contains(name)) {
+                throw new IllegalArgumentException("Unknown click field: " + name);
+            }
+            selected.add(name);
+        }
+        return selected;
+    }
+
+    /**
+     * Returns one page of a link's clicks, newest first.
+     *
+     * @param shortCode The link to read
+     * @param fromMillis Oldest click to include, or 0 for no lower bound
+     * @param toMillis Newest click to include, or Long.MAX_VALUE for no upper bound
+     * @param fields The fields to include in each record
+     * @param limit Maximum clicks on the page
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @return The page and the cursor for the next one
+     */
+    public CursorPage<Map<String, String>> getClickDetailsPage(String shortCode, long fromMillis, long toMillis,
+                                                               Set<String> fields, int limit, String cursor) {
+        int pageSize = Math.max(1, Math.min(limit, maxPageSize));
+        // One extra row per range tells whether another page exists
+        try (ClickDetailsStream clicks = clickStore.openClickDetails(
+                shortCode, fromMillis, toMillis, fields, cursor, pageSize + 1)) {
+            List<Map<String, String>> items = new ArrayList<>(pageSize);
+            while (items.size() < pageSize && clicks.hasNext()) {
+                items.add(clicks.next());
+            }
+            return new CursorPage<>(items, clicks.hasNext() ? clicks.cursor() : null);
+        }
+    }
+
+    /**
+     * Feeds every matching click of a link to a consumer, newest first, without
+     * holding more than a few rows in memory.
+     *
+     * @param shortCode The link to read
+     * @param fromMillis Oldest click to include, or 0 for no lower bound
+     * @param toMillis Newest click to include, or Long.MAX_VALUE for no upper bound
+     * @param fields The fields to include in each record
+     * @param sink Receives each click record
+     */
+    public void streamClickDetails(String shortCode, long fromMillis, long toMillis,
+                                   Set<String> fields, Consumer<Map<String, String>> sink) {
+        try (ClickDetailsStream clicks = clickStore.openClickDetails(
+                shortCode, fromMillis, toMillis, fields, null, 0)) {
+            clicks.forEachRemaining(sink);
+        }
+    }
+
+    private Map<String, Long> top(Map<String, Long> counts) {
+        Map<String, Long> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(topK)
+                .forEach(e -> top.put(e.getKey(), e.getValue()));
+        return top;
+    }
+}
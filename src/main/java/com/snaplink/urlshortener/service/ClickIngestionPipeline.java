@@ -0,0 +1,265 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.ClickEvent;
+import com.snaplink.urlshortener.repository.ClickStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Asynchronous, batched writer for click events.
+ * The redirect path only enqueues into a bounded in-memory queue; background workers
+ * drain it and write batches to Bigtable through bulk mutations. Batches are closed
+ * when they reach the configured event count, byte size, or linger time.
+ */
+@Component
+public class ClickIngestionPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(ClickIngestionPipeline.class);
+
+    /**
+     * What to do with a click when the queue is under pressure.
+     */
+    public enum BackpressurePolicy {
+        /** Drop the click when the queue is full. */
+        DROP,
+        /** Above the high-water mark, keep only one in every {@code sample-rate} clicks. */
+        SAMPLE,
+        /**
+         * Wait up to {@code block-timeout-ms} for space, then drop. Clicks handed over with
+         * {@link #offer} never wait and are dropped at once instead.
+         */
+        BLOCK
+    }
+
+    private final ClickStore clickStore;
+    private final BlockingQueue<ClickEvent> queue;
+    private final int workerCount;
+    private final int batchSize;
+    private final long batchBytes;
+    private final long lingerMillis;
+    private final BackpressurePolicy policy;
+    private final int sampleRate;
+    private final int highWaterMark;
+    private final long blockTimeoutMillis;
+    private final long shutdownTimeoutMillis;
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    private final Counter accepted;
+    private final Counter dropped;
+    private final Counter written;
+    private final Counter failed;
+    private final Timer writeLag;
+
+    public ClickIngestionPipeline(
+            ClickStore clickStore,
+            MeterRegistry meterRegistry,
+            @Value("${app.clicks.queue-capacity:10000}") int queueCapacity,
+            @Value("${app.clicks.workers:2}") int workerCount,
+            @Value("${app.clicks.batch-size:500}") int batchSize,
+            @Value("${app.clicks.batch-bytes:1048576}") long batchBytes,
+            @Value("${app.clicks.linger-ms:200}") long lingerMillis,
+            @Value("${app.clicks.backpressure:DROP}") BackpressurePolicy policy,
+            @Value("${app.clicks.sample-rate:10}") int sampleRate,
+            @Value("${app.clicks.block-timeout-ms:50}") long blockTimeoutMillis,
+            @Value("${app.clicks.shutdown-timeout-seconds:10}") long shutdownTimeoutSeconds
+    ) {
+        this.clickStore = clickStore;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.batchBytes = batchBytes;
+        this.lingerMillis = lingerMillis;
+        this.policy = policy;
+        this.sampleRate = Math.max(1, sampleRate);
+        this.highWaterMark = Math.max(1, (int) (queueCapacity * 0.8));
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.shutdownTimeoutMillis = TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds);
+
+        Gauge.builder("clicks.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        this.accepted = meterRegistry.counter("clicks.accepted");
+        this.dropped = meterRegistry.counter("clicks.dropped");
+        this.written = meterRegistry.counter("clicks.written");
+        this.failed = meterRegistry.counter("clicks.failed");
+        this.writeLag = Timer.builder("clicks.write.lag")
+                .description("Time from click to durable write")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::runWorker, "click-writer-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Hands a click to the pipeline without waiting for it to be written.
+     * Depending on the backpressure policy the click may be dropped when the queue is full.
+     *
+     * @param event The click to record
+     * @return True if the click was queued, false if it was dropped
+     */
+    public boolean submit(ClickEvent event) {
+        return enqueue(event, policy == BackpressurePolicy.BLOCK);
+    }
+
+    /**
+     * Hands a click to the pipeline without ever waiting for queue space, whatever the
+     * backpressure policy. For callers that must not block, such as storage callbacks.
+     *
+     * @param event The click to record
+     * @return True if the click was queued, false if it was dropped
+     */
+    public boolean offer(ClickEvent event) {
+        return enqueue(event, false);
+    }
+
+    private boolean enqueue(ClickEvent event, boolean mayWait) {
+        boolean queued;
+        switch (policy) {
+            case BLOCK:
+                if (!mayWait) {
+                    queued = queue.offer(event);
+                    break;
+                }
+                try {
+                    queued = queue.offer(event, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    queued = false;
+                }
+                break;
+            case SAMPLE:
+                if (queue.size() >= highWaterMark && sampleCounter.incrementAndGet() % sampleRate != 0) {
+                    queued = false;
+                } else {
+                    queued = queue.offer(event);
+                }
+                break;
+            case DROP:
+            default:
+                queued = queue.offer(event);
+        }
+
+        if (queued) {
+            accepted.increment();
+        } else {
+            dropped.increment();
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the number of clicks waiting to be written.
+     *
+     * @return The current queue depth
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    private void runWorker() {
+        List<ClickEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                if (fillBatch(batch)) {
+                    writeBatch(batch);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested; fall through and drain what is left
+                running = false;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Blocks for the first event, then keeps collecting until a size, byte, or time limit is hit
+    private boolean fillBatch(List<ClickEvent> batch) throws InterruptedException {
+        ClickEvent first = queue.poll(lingerMillis, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        long bytes = first.estimatedBytes();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+
+        while (batch.size() < batchSize && bytes < batchBytes) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                // Take whatever is immediately available without waiting
+                ClickEvent next = queue.poll();
+                if (next == null) {
+                    break;
+                }
+                batch.add(next);
+                bytes += next.estimatedBytes();
+                continue;
+            }
+            ClickEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            bytes += next.estimatedBytes();
+        }
+        return true;
+    }
+
+    private void writeBatch(List<ClickEvent> batch) {
+        try {
+            clickStore.recordClicks(batch);
+            written.increment(batch.size());
+            long now = System.currentTimeMillis();
+            for (ClickEvent event : batch) {
+                writeLag.record(Duration.ofMillis(Math.max(0, now - event.getTimestampMillis())));
+            }
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            logger.warn("Failed to write batch of {} clicks", batch.size(), e);
+        }
+    }
+
+    /**
+     * Stops accepting new work and flushes queued clicks before the application exits.
+     */
+    @PreDestroy
+    void shutdown() {
+        running = false;
+        long deadline = System.currentTimeMillis() + shutdownTimeoutMillis;
+        for (Thread worker : workers) {
+            try {
+                worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!queue.isEmpty()) {
+            logger.warn("Click pipeline shut down with {} unwritten clicks", queue.size());
+        }
+    }
+}
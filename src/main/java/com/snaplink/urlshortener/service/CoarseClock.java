@@ -0,0 +1,49 @@
+package com.snaplink.urlshortener.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Wall clock with a fixed resolution for hot paths such as redirect expiry checks.
+ * A background thread refreshes a volatile field, so reading the time is a plain load.
+ */
+@Component
+public class CoarseClock {
+
+    private final Thread ticker;
+    private volatile long nowMillis = System.currentTimeMillis();
+    private volatile boolean running = true;
+
+    public CoarseClock(@Value("${app.clock.resolution-ms:10}") long resolutionMillis) {
+        this.ticker = new Thread(() -> tick(resolutionMillis), "coarse-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Returns the current time in epoch milliseconds, at most one resolution step behind.
+     *
+     * @return The current time
+     */
+    public long millis() {
+        return nowMillis;
+    }
+
+    private void tick(long resolutionMillis) {
+        while (running) {
+            nowMillis = System.currentTimeMillis();
+            try {
+                Thread.sleep(resolutionMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        ticker.interrupt();
+    }
+}
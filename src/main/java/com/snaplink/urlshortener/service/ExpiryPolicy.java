@@ -0,0 +1,91 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.model.User;
+import com.snaplink.urlshortener.repository.UserStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides when a new link expires, based on the requested date and the owner's plan.
+ * Plans may cap how long their links live, for example {@code demo=PT24H}; the result is
+ * stored with the link, so redirects only compare it with the clock.
+ */
+@Component
+public class ExpiryPolicy {
+
+    private final UserStore userStore;
+    private final String defaultExpiration;
+    private final String defaultPlan;
+    private final Map<String, Duration> maxLifetimeByPlan;
+
+    public ExpiryPolicy(
+            UserStore userStore,
+            @Value("${app.expiry.default-expiration:2030-01-01T00:00:00Z}") String defaultExpiration,
+            @Value("${app.expiry.default-plan:free}") String defaultPlan,
+            @Value("${app.expiry.plan-max-lifetimes:demo=PT24H}") String planMaxLifetimes
+    ) {
+        this.userStore = userStore;
+        this.defaultExpiration = defaultExpiration;
+        this.defaultPlan = defaultPlan;
+        this.maxLifetimeByPlan = parseLifetimes(planMaxLifetimes);
+    }
+
+    /**
+     * Returns the expiration date to store with a new link.
+     *
+     * @param userId The owner of the link
+     * @param requested The expiration date asked for, or null/empty for the default
+     * @param creationMillis When the link is created, epoch milliseconds
+     * @return The expiration date as an Instant string
+     * @throws IllegalArgumentException if the requested date cannot be parsed
+     */
+    public String expirationFor(String userId, String requested, long creationMillis) {
+        return expirationFor(userId, requested, creationMillis, new HashMap<>());
+    }
+
+    /**
+     * Same as {@link #expirationFor(String, String, long)}, remembering owners' plans in
+     * {@code plans} so a batch of links looks each owner up only once.
+     *
+     * @param plans Subscription plans by user ID, filled in as owners are looked up
+     */
+    public String expirationFor(String userId, String requested, long creationMillis, Map<String, String> plans) {
+        boolean hasRequested = requested != null && !requested.isEmpty();
+        Long expiration = ShortUrl.parseEpochMillis(hasRequested ? requested : defaultExpiration);
+        if (expiration == null) {
+            throw new IllegalArgumentException("Invalid expiration date: " + requested);
+        }
+
+        // Only look the owner up when some plan actually caps link lifetime
+        if (!maxLifetimeByPlan.isEmpty()) {
+            String plan = plans.computeIfAbsent(userId,
+                    id -> userStore.findById(id).map(User::getSubscriptionPlan).orElse(defaultPlan));
+            Duration maxLifetime = maxLifetimeByPlan.get(plan.toLowerCase(Locale.ROOT));
+            if (maxLifetime != null) {
+                expiration = Math.min(expiration, creationMillis + maxLifetime.toMillis());
+            }
+        }
+        return Instant.ofEpochMilli(expiration).toString();
+    }
+
+    // "plan=ISO-8601 duration" pairs separated by commas
+    private static Map<String, Duration> parseLifetimes(String spec) {
+        Map<String, Duration> lifetimes = new HashMap<>();
+        for (String pair : spec.split(",")) {
+            if (pair.isBlank()) continue;
+            String[] parts = pair.split("=", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected plan=duration in app.expiry.plan-max-lifetimes: " + pair);
+            }
+            lifetimes.put(parts[0].trim().toLowerCase(Locale.ROOT), Duration.parse(parts[1].trim()));
+        }
+        return lifetimes;
+    }
+}
@@ -0,0 +1,28 @@
+package com.snaplink.urlshortener.service;
+
+/**
+ * Redirect target of a short code as held by the {@link HotLinkTable}.
+ */
+public final class HotLink {
+    private final String longUrl;
+    private final long expiresAtMillis;
+    private final boolean oneTime;
+    private final String analyticsKey;
+
+    public HotLink(String longUrl, long expiresAtMillis, boolean oneTime, String analyticsKey) {
+        this.longUrl = longUrl;
+        this.expiresAtMillis = expiresAtMillis;
+        this.oneTime = oneTime;
+        this.analyticsKey = analyticsKey;
+    }
+
+    public String getLongUrl() { return longUrl; }
+
+    // Epoch milliseconds; Long.MAX_VALUE if the link does not expire
+    public long getExpiresAtMillis() { return expiresAtMillis; }
+
+    public boolean isOneTime() { return oneTime; }
+
+    // Code the link's clicks are recorded under; differs from the short code after a rename
+    public String getAnalyticsKey() { return analyticsKey; }
+}
@@ -0,0 +1,191 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.repository.UrlStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Off-heap table of hot redirect targets, consulted before the {@link ShortUrlCache}.
+ * <p>
+ * Entries live in a memory-mapped file ({@link MappedLinkTable}), so millions of links cost
+ * no Java heap or GC time and the table is still warm after a restart. It is filled on
+ * redirect misses, updated when this instance creates, deletes or renames a link, and can
+ * be built from url_tracking on startup. Every entry is only trusted for {@code ttl-seconds}
+ * after it was written, which bounds how long a change made on another instance goes unseen.
+ * It defaults to the heap cache TTL, so both layers are equally stale. One-time and inactive
+ * links are never stored.
+ */
+@Component
+public class HotLinkTable {
+    private static final Logger logger = LoggerFactory.getLogger(HotLinkTable.class);
+
+    private final UrlStore urlStore;
+    private final CoarseClock clock;
+    private final boolean buildOnStart;
+    private final long ttlMillis;
+    private final double compactDeadRatio;
+    private final Counter hits;
+    private final Counter misses;
+
+    // Null when disabled or when the file could not be opened
+    private final MappedLinkTable table;
+
+    public HotLinkTable(
+            UrlStore urlStore,
+            CoarseClock clock,
+            MeterRegistry meterRegistry,
+            @Value("${app.hot-links.enabled:false}") boolean enabled,
+            @Value("${app.hot-links.path:${java.io.tmpdir}/snaplink-hot-links.bin}") String path,
+            @Value("${app.hot-links.slots:4194304}") int slots,
+            @Value("${app.hot-links.data-bytes:536870912}") long dataBytes,
+            @Value("${app.hot-links.max-load-factor:0.7}") double maxLoadFactor,
+            @Value("${app.hot-links.ttl-seconds:${app.cache.short-url.ttl-seconds:60}}") long ttlSeconds,
+            @Value("${app.hot-links.compact-dead-ratio:0.3}") double compactDeadRatio,
+            @Value("${app.hot-links.build-on-start:false}") boolean buildOnStart
+    ) {
+        this.urlStore = urlStore;
+        this.clock = clock;
+        this.buildOnStart = buildOnStart;
+        this.ttlMillis = Duration.ofSeconds(ttlSeconds).toMillis();
+        this.compactDeadRatio = compactDeadRatio;
+        this.table = enabled ? open(Paths.get(path), slots, dataBytes, maxLoadFactor) : null;
+
+        this.hits = Counter.builder("hot_link_table.lookups").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("hot_link_table.lookups").tag("result", "miss").register(meterRegistry);
+        if (table != null) {
+            Gauge.builder("hot_link_table.entries", table, MappedLinkTable::liveEntries).register(meterRegistry);
+            Gauge.builder("hot_link_table.data_bytes", table, MappedLinkTable::dataBytesUsed).register(meterRegistry);
+            Gauge.builder("hot_link_table.dead_bytes", table, MappedLinkTable::deadBytes).register(meterRegistry);
+        }
+    }
+
+    private static MappedLinkTable open(Path path, int slots, long dataBytes, double maxLoadFactor) {
+        try {
+            MappedLinkTable table = MappedLinkTable.open(path, slots, dataBytes, maxLoadFactor);
+            logger.info("Opened hot link table {} with {} entries", path, table.liveEntries());
+            return table;
+        } catch (IOException e) {
+            logger.warn("Could not open hot link table {}; redirects will use the heap cache only", path, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the redirect target of a short code, or null if it is not in the table.
+     * Never blocks; a table that is being compacted answers with misses.
+     *
+     * @param shortCode The short code to resolve
+     * @return The target, or null on a miss
+     */
+    public HotLink get(String shortCode) {
+        if (table == null) return null;
+        HotLink link = table.get(shortCode, clock.millis());
+        (link == null ? misses : hits).increment();
+        return link;
+    }
+
+    /**
+     * Stores a link read on a redirect miss. Skipped if another writer holds the table,
+     * so the redirect path never waits.
+     *
+     * @param url The link as resolved from storage
+     */
+    public void offer(ShortUrl url) {
+        write(url, false);
+    }
+
+    /**
+     * Stores a link this instance created or renamed, waiting for other writers.
+     *
+     * @param url The link as written to storage
+     */
+    public void put(ShortUrl url) {
+        write(url, true);
+    }
+
+    /**
+     * Drops a short code from the table.
+     *
+     * @param shortCode The short code that was deleted or renamed
+     */
+    public void remove(String shortCode) {
+        if (table != null) {
+            table.remove(shortCode);
+        }
+    }
+
+    private void write(ShortUrl url, boolean wait) {
+        if (table == null || url.isOneTime() || !url.isActive() || url.getLongUrl() == null) return;
+        HotLink link = new HotLink(url.getLongUrl(), url.getExpirationMillis(), false, url.getAnalyticsKey());
+        table.put(url.getShortCode(), link, clock.millis() + ttlMillis, wait);
+    }
+
+    /**
+     * Rewrites the table without dead records once they make up {@code compact-dead-ratio}
+     * of the data region, or when the data region is nearly full.
+     */
+    @Scheduled(initialDelayString = "${app.hot-links.compact-interval-ms:300000}",
+            fixedDelayString = "${app.hot-links.compact-interval-ms:300000}")
+    public void compact() {
+        if (table == null) return;
+        long used = table.dataBytesUsed();
+        boolean mostlyDead = used > 0 && table.deadBytes() >= used * compactDeadRatio;
+        boolean nearlyFull = used >= table.dataCapacity() * 0.9;
+        if (!mostlyDead && !nearlyFull) return;
+
+        long started = System.currentTimeMillis();
+        try {
+            table.compact(started);
+            logger.info("Compacted hot link table from {} to {} bytes ({} entries) in {} ms",
+                    used, table.dataBytesUsed(), table.liveEntries(), System.currentTimeMillis() - started);
+        } catch (IOException e) {
+            logger.warn("Hot link table compaction failed", e);
+        }
+    }
+
+    /**
+     * Fills an empty table from url_tracking when {@code build-on-start} is set, in the
+     * background so startup is not delayed. Links that no longer fit are skipped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIfEmpty() {
+        if (table == null || !buildOnStart || table.liveEntries() > 0) return;
+        Thread builder = new Thread(() -> {
+            long started = System.currentTimeMillis();
+            try {
+                urlStore.forEachShortUrl(this::put);
+                logger.info("Built hot link table with {} entries in {} ms",
+                        table.liveEntries(), System.currentTimeMillis() - started);
+            } catch (RuntimeException e) {
+                logger.warn("Hot link table build failed after {} entries", table.liveEntries(), e);
+            }
+        }, "hot-link-table-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (table == null) return;
+        try {
+            table.close();
+        } catch (IOException e) {
+            logger.warn("Could not close hot link table cleanly; it will be rebuilt on the next start", e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.repository.IdRangeLeaser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Base62 short code generator backed by per-instance leased ID ranges.
+ * Each instance leases a block of IDs from shared storage and hands them out with a
+ * single atomic increment, so generation is lock-free and needs no existence check.
+ * IDs are offset so every code has at least {@code min-length} characters, which keeps
+ * generated codes out of the 6-character space used by the old hash-based codes.
+ * <p>
+ * A block is abandoned once it is {@code lease-max-age-ms} old, even if IDs are left. Every
+ * generated code is therefore handed out soon after its block was leased, which lets
+ * {@link ShortCodeFilter} tell which codes can only have been created before its snapshot.
+ */
+@Component
+public class LeasedRangeShortCodeGenerator implements ShortCodeGenerator {
+
+    private final IdRangeLeaser leaser;
+    private final long leaseSize;
+    private final long offset;
+    private final int minLength;
+    private final long leaseMaxAgeNanos;
+    private final AtomicReference<IdRange> current = new AtomicReference<>(IdRange.EMPTY);
+
+    public LeasedRangeShortCodeGenerator(
+            IdRangeLeaser leaser,
+            @Value("${app.short-code.lease-size:1000}") long leaseSize,
+            @Value("${app.short-code.min-length:7}") int minLength,
+            @Value("${app.short-code.lease-max-age-ms:60000}") long leaseMaxAgeMillis
+    ) {
+        this.leaser = leaser;
+        this.leaseSize = leaseSize;
+        this.offset = Base62.minValueForLength(minLength);
+        this.minLength = minLength;
+        this.leaseMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos(leaseMaxAgeMillis);
+    }
+
+    @Override
+    public String nextCode() {
+        return Base62.encode(offset + nextId());
+    }
+
+    @Override
+    public long idOf(String shortCode) {
+        // encode never emits a leading zero, and 10 digits cover any ID this generator will reach
+        if (shortCode.length() < minLength || shortCode.length() > 10
+                || shortCode.charAt(0) == '0' || !Base62.isEncoded(shortCode)) {
+            return -1;
+        }
+        return Base62.decode(shortCode) - offset;
+    }
+
+    private long nextId() {
+        while (true) {
+            IdRange range = current.get();
+            long id = range.next.getAndIncrement();
+            if (id < range.end && System.nanoTime() - range.leasedAtNanos < leaseMaxAgeNanos) {
+                return id;
+            }
+            refill(range);
+        }
+    }
+
+    // Only one thread leases a new block; the others retry against the replaced range
+    private synchronized void refill(IdRange exhausted) {
+        if (current.get() == exhausted) {
+            long start = leaser.leaseRange(leaseSize);
+            current.set(new IdRange(start, start + leaseSize, System.nanoTime()));
+        }
+    }
+
+    private static final class IdRange {
+        static final IdRange EMPTY = new IdRange(0, 0, System.nanoTime());
+
+        final AtomicLong next;
+        final long end;
+        final long leasedAtNanos;
+
+        IdRange(long start, long end, long leasedAtNanos) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+            this.leasedAtNanos = leasedAtNanos;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.CursorPage;
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.model.ShortUrlDto;
+import com.snaplink.urlshortener.repository.ClickStore;
+import com.snaplink.urlshortener.repository.SearchTerms;
+import com.snaplink.urlshortener.repository.UrlStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Searches a user's links by short code, alias and long URL.
+ * Candidates come from the per-user trigram index, so the cost depends on the size of
+ * the matching posting lists rather than on the number of links in the system. Candidates
+ * are then checked against the link text, ranked, and paged.
+ */
+@Service
+public class LinkSearchService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    // Best score first, then newest; the code makes the order total so cursors never skip ties
+    private static final Comparator<Match> RANKING = Comparator.comparingInt((Match m) -> m.score).reversed()
+            .thenComparing((Match m) -> m.creationDate, Comparator.reverseOrder())
+            .thenComparing(m -> m.shortCode);
+
+    private final UrlStore urlStore;
+    private final ClickStore clickStore;
+    private final int maxPostingsPerTerm;
+    private final int maxCandidates;
+
+    public LinkSearchService(
+            UrlStore urlStore,
+            ClickStore clickStore,
+            @Value("${app.search.max-postings-per-term:5000}") int maxPostingsPerTerm,
+            @Value("${app.search.max-candidates:1000}") int maxCandidates
+    ) {
+        this.urlStore = urlStore;
+        this.clickStore = clickStore;
+        this.maxPostingsPerTerm = maxPostingsPerTerm;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Returns one page of a user's links matching a query, best matches first.
+     * Exact short code matches rank highest, then code prefixes, code substrings,
+     * and long URL substrings; ties go to the newest link.
+     *
+     * @param userId The owner of the links
+     * @param query The text to look for (case-insensitive)
+     * @param limit Maximum number of links on the page
+     * @param cursor Cursor from the previous page, or null for the first page
+     * @return The page and the cursor for the next one
+     * @throws IllegalArgumentException if the query is empty or the cursor is malformed
+     */
+    public CursorPage<ShortUrlDto> search(String userId, String query, int limit, String cursor) {
+        // The same normalization as the index, so "https://www.example.com" finds example.com links
+        String normalized = SearchTerms.normalize(query);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Search query must not be empty.");
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Match after = decodeCursor(cursor);
+
+        Set<String> candidates = urlStore.findSearchCandidates(userId, normalized, maxPostingsPerTerm);
+        List<String> codes = candidates.stream().limit(maxCandidates).collect(Collectors.toList());
+
+        // Only matches ranked after the last one returned are kept, so later pages sort less
+        List<Match> matches = new ArrayList<>();
+        for (ShortUrl url : urlStore.getShortUrls(codes)) {
+            int score = score(url, normalized);
+            if (score > 0 && userId.equals(url.getUserId())) {
+                Match match = new Match(url, score);
+                if (after == null || RANKING.compare(match, after) > 0) {
+                    matches.add(match);
+                }
+            }
+        }
+        matches.sort(RANKING);
+
+        List<ShortUrl> page = new ArrayList<>(pageSize);
+        for (int i = 0; i < matches.size() && page.size() < pageSize; i++) {
+            page.add(matches.get(i).url);
+        }
+        String nextCursor = matches.size() > pageSize ? encodeCursor(matches.get(pageSize - 1)) : null;
+
+        Map<String, Long> counts = clickStore.getClickCounts(
+                page.stream().map(ShortUrl::getAnalyticsKey).collect(Collectors.toList()));
+        List<ShortUrlDto> items = page.stream()
+                .map(url -> new ShortUrlDto(url, counts.getOrDefault(url.getAnalyticsKey(), 0L)))
+                .collect(Collectors.toList());
+        return new CursorPage<>(items, nextCursor);
+    }
+
+    private static int score(ShortUrl url, String query) {
+        String code = SearchTerms.normalize(url.getShortCode());
+        String alias = SearchTerms.normalize(url.getCustomAlias());
+        if (code.equals(query) || alias.equals(query)) return 100;
+        if (code.startsWith(query) || alias.startsWith(query)) return 50;
+        if (code.contains(query) || alias.contains(query)) return 30;
+        if (SearchTerms.normalize(url.getLongUrl()).contains(query)) return 10;
+        return 0;
+    }
+
+    private static final class Match {
+        private final ShortUrl url;
+        private final int score;
+        private final String creationDate;
+        private final String shortCode;
+
+        Match(ShortUrl url, int score) {
+            this(url, score, url.getCreationDate() == null ? "" : url.getCreationDate(), url.getShortCode());
+        }
+
+        Match(ShortUrl url, int score, String creationDate, String shortCode) {
+            this.url = url;
+            this.score = score;
+            this.creationDate = creationDate;
+            this.shortCode = shortCode;
+        }
+    }
+
+    // The cursor is the ranking key of the last link on the page: score, creation date and code
+    private static String encodeCursor(Match last) {
+        String key = last.score + "#" + last.creationDate + "#" + last.shortCode;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Match decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) return null;
+        try {
+            String[] key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("#", 3);
+            if (key.length != 3) throw new IllegalArgumentException("Invalid cursor.");
+            return new Match(null, Integer.parseInt(key[0]), key[1], key[2]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor.", e);
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.snaplink.urlshortener.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash table of short code to redirect target, stored in one memory-mapped file.
+ * <p>
+ * File layout: a 64-byte header, {@code slots} 16-byte slots (64-bit key hash, record offset),
+ * then an append-only data region of records
+ * {@code code length (2) | code | URL length (4) | URL | expires-at millis (8) | valid-until millis (8) | flags (1)
+ * | analytics key length (2) | analytics key}, where an empty analytics key means the code itself.
+ * Hash 0 marks an empty slot; offset -1 marks a deleted one. Overwrites and deletes leave dead
+ * records behind until {@link #compact(long)} copies the live ones into a fresh file.
+ * <p>
+ * All state, including counters, lives in the mapping, so nothing is held on the Java heap
+ * and the table survives restarts. A file that was not closed cleanly is discarded on open.
+ * Reads never block: while a writer holds the lock they report a miss.
+ */
+final class MappedLinkTable implements Closeable {
+
+    private static final int MAGIC = 0x534C4854; // "SLHT"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 16;
+    private static final long DELETED = -1L;
+    private static final byte FLAG_ONE_TIME = 1;
+
+    // Header fields
+    private static final int H_MAGIC = 0;
+    private static final int H_VERSION = 4;
+    private static final int H_SLOTS = 8;
+    private static final int H_CLEAN = 12;
+    private static final int H_DATA_END = 16;
+    private static final int H_LIVE = 24;
+    private static final int H_DEAD_BYTES = 32;
+    private static final int H_USED_SLOTS = 40;
+
+    private final Path path;
+    private final int slots;
+    private final long dataStart;
+    private final long fileSize;
+    private final int maxUsedSlots;
+    private final StampedLock lock = new StampedLock();
+
+    private FileChannel channel;
+    // Replaced by compaction; read without the lock by the metric gauges
+    private volatile MappedByteBuffer buffer;
+
+    private MappedLinkTable(Path path, int slots, long dataBytes, double maxLoadFactor) {
+        if (Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Hot link slots must be a power of two: " + slots);
+        }
+        this.path = path;
+        this.slots = slots;
+        this.dataStart = HEADER_BYTES + (long) slots * SLOT_BYTES;
+        this.fileSize = dataStart + dataBytes;
+        if (fileSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Hot link table must fit in one 2 GiB mapping: " + fileSize + " bytes");
+        }
+        this.maxUsedSlots = (int) (slots * maxLoadFactor);
+    }
+
+    /**
+     * Opens the table at {@code path}, reusing the file if it has the same geometry and was
+     * closed cleanly, and creating an empty one otherwise.
+     */
+    static MappedLinkTable open(Path path, int slots, long dataBytes, double maxLoadFactor) throws IOException {
+        MappedLinkTable table = new MappedLinkTable(path, slots, dataBytes, maxLoadFactor);
+        if (!table.map(false)) {
+            table.map(true);
+        }
+        table.buffer.putInt(H_CLEAN, 0);
+        return table;
+    }
+
+    // Maps the file; returns false if an existing file cannot be reused
+    private boolean map(boolean recreate) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        if (recreate) {
+            Files.deleteIfExists(path);
+        }
+        boolean fresh = !Files.exists(path);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            if (fresh) {
+                file.setLength(fileSize);
+            } else if (file.length() != fileSize) {
+                return false;
+            }
+            channel = file.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+        }
+        if (fresh) {
+            buffer.putInt(H_MAGIC, MAGIC);
+            buffer.putInt(H_VERSION, VERSION);
+            buffer.putInt(H_SLOTS, slots);
+            buffer.putLong(H_DATA_END, dataStart);
+            return true;
+        }
+        return buffer.getInt(H_MAGIC) == MAGIC && buffer.getInt(H_VERSION) == VERSION
+                && buffer.getInt(H_SLOTS) == slots && buffer.getInt(H_CLEAN) == 1;
+    }
+
+    /**
+     * Looks up a short code without blocking.
+     *
+     * @param nowMillis The current time; entries past their valid-until time are misses
+     * @return The entry, or null on a miss or while a writer holds the table
+     */
+    HotLink get(String shortCode, long nowMillis) {
+        long stamp = lock.tryReadLock();
+        if (stamp == 0L) return null;
+        try {
+            byte[] code = shortCode.getBytes(StandardCharsets.UTF_8);
+            int slot = findSlot(code, hash(code));
+            if (slot < 0) return null;
+            long offset = buffer.getLong(slotPosition(slot) + 8);
+            return validUntil(offset) < nowMillis ? null : readEntry(offset);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Inserts or replaces a short code.
+     *
+     * @param wait Whether to wait for other writers; if false the put is skipped when the table is busy
+     * @return false if the put was skipped or the table is full (compaction may make room)
+     */
+    boolean put(String shortCode, HotLink entry, long validUntilMillis, boolean wait) {
+        long stamp = wait ? lock.writeLock() : lock.tryWriteLock();
+        if (stamp == 0L) return false;
+        try {
+            byte[] code = shortCode.getBytes(StandardCharsets.UTF_8);
+            byte[] url = entry.getLongUrl().getBytes(StandardCharsets.UTF_8);
+            byte flags = entry.isOneTime() ? FLAG_ONE_TIME : 0;
+            byte[] analyticsKey = shortCode.equals(entry.getAnalyticsKey())
+                    ? new byte[0] : entry.getAnalyticsKey().getBytes(StandardCharsets.UTF_8);
+            return insert(code, hash(code), url, entry.getExpiresAtMillis(), validUntilMillis, flags, analyticsKey);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Removes a short code if present.
+     */
+    void remove(String shortCode) {
+        long stamp = lock.writeLock();
+        try {
+            byte[] code = shortCode.getBytes(StandardCharsets.UTF_8);
+            int slot = findSlot(code, hash(code));
+            if (slot < 0) return;
+            int position = slotPosition(slot);
+            addHeader(H_DEAD_BYTES, recordSize(buffer.getLong(position + 8)));
+            addHeader(H_LIVE, -1);
+            buffer.putLong(position + 8, DELETED);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Rewrites the table with only its live, still valid records, dropping dead records
+     * and deleted slots. Readers see misses while this runs.
+     */
+    void compact(long nowMillis) throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+            MappedLinkTable fresh = new MappedLinkTable(tmp, slots, fileSize - dataStart, 1.0);
+            fresh.map(true);
+            for (int slot = 0; slot < slots; slot++) {
+                int position = slotPosition(slot);
+                long hash = buffer.getLong(position);
+                long offset = buffer.getLong(position + 8);
+                if (hash == 0L || offset == DELETED || validUntil(offset) < nowMillis) continue;
+                fresh.copyRecord(hash, buffer, offset, recordSize(offset));
+            }
+            fresh.buffer.putInt(H_CLEAN, 1);
+            fresh.buffer.force();
+            fresh.channel.close();
+
+            channel.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map(false);
+            buffer.putInt(H_CLEAN, 0);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    long liveEntries() { return buffer.getLong(H_LIVE); }
+
+    long dataBytesUsed() { return buffer.getLong(H_DATA_END) - dataStart; }
+
+    long deadBytes() { return buffer.getLong(H_DEAD_BYTES); }
+
+    long dataCapacity() { return fileSize - dataStart; }
+
+    /**
+     * Marks the file as cleanly closed, flushes it and releases the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        long stamp = lock.writeLock();
+        try {
+            buffer.putInt(H_CLEAN, 1);
+            buffer.force();
+            channel.close();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // Returns the slot holding a live record for the code, or -1
+    private int findSlot(byte[] code, long hash) {
+        int mask = slots - 1;
+        int slot = (int) hash & mask;
+        for (int probes = 0; probes < slots; probes++) {
+            int position = slotPosition(slot);
+            long slotHash = buffer.getLong(position);
+            if (slotHash == 0L) return -1;
+            if (slotHash == hash) {
+                long offset = buffer.getLong(position + 8);
+                if (offset != DELETED && codeEquals(offset, code)) return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean insert(byte[] code, long hash, byte[] url, long expiresAt, long validUntil, byte flags,
+                           byte[] analyticsKey) {
+        int size = 2 + code.length + 4 + url.length + 8 + 8 + 1 + 2 + analyticsKey.length;
+        long dataEnd = buffer.getLong(H_DATA_END);
+        if (dataEnd + size > fileSize) return false;
+
+        int existing = findSlot(code, hash);
+        int target = existing;
+        if (target < 0) {
+            target = freeSlot(hash);
+            if (target < 0) return false;
+        }
+
+        int offset = (int) dataEnd;
+        buffer.putShort(offset, (short) code.length);
+        buffer.put(offset + 2, code);
+        buffer.putInt(offset + 2 + code.length, url.length);
+        buffer.put(offset + 6 + code.length, url);
+        int tail = offset + 6 + code.length + url.length;
+        buffer.putLong(tail, expiresAt);
+        buffer.putLong(tail + 8, validUntil);
+        buffer.put(tail + 16, flags);
+        buffer.putShort(tail + 17, (short) analyticsKey.length);
+        buffer.put(tail + 19, analyticsKey);
+        buffer.putLong(H_DATA_END, dataEnd + size);
+
+        int position = slotPosition(target);
+        if (existing >= 0) {
+            addHeader(H_DEAD_BYTES, recordSize(buffer.getLong(position + 8)));
+        } else {
+            if (buffer.getLong(position) == 0L) addHeader(H_USED_SLOTS, 1);
+            addHeader(H_LIVE, 1);
+            buffer.putLong(position, hash);
+        }
+        buffer.putLong(position + 8, dataEnd);
+        return true;
+    }
+
+    // First empty or deleted slot on the probe path, or -1 if the load factor limit is reached
+    private int freeSlot(long hash) {
+        int mask = slots - 1;
+        int slot = (int) hash & mask;
+        for (int probes = 0; probes < slots; probes++) {
+            int position = slotPosition(slot);
+            long slotHash = buffer.getLong(position);
+            if (slotHash == 0L) {
+                return buffer.getLong(H_USED_SLOTS) < maxUsedSlots ? slot : -1;
+            }
+            if (buffer.getLong(position + 8) == DELETED) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void copyRecord(long hash, MappedByteBuffer source, long offset, int size) {
+        byte[] record = new byte[size];
+        source.get((int) offset, record);
+        long dataEnd = buffer.getLong(H_DATA_END);
+        buffer.put((int) dataEnd, record);
+        buffer.putLong(H_DATA_END, dataEnd + size);
+
+        int mask = slots - 1;
+        int slot = (int) hash & mask;
+        while (buffer.getLong(slotPosition(slot)) != 0L) {
+            slot = (slot + 1) & mask;
+        }
+        buffer.putLong(slotPosition(slot), hash);
+        buffer.putLong(slotPosition(slot) + 8, dataEnd);
+        addHeader(H_USED_SLOTS, 1);
+        addHeader(H_LIVE, 1);
+    }
+
+    private boolean codeEquals(long offset, byte[] code) {
+        int position = (int) offset;
+        if (buffer.getShort(position) != code.length) return false;
+        for (int i = 0; i < code.length; i++) {
+            if (buffer.get(position + 2 + i) != code[i]) return false;
+        }
+        return true;
+    }
+
+    private HotLink readEntry(long offset) {
+        int position = (int) offset;
+        int codeLength = buffer.getShort(position);
+        int urlLength = buffer.getInt(position + 2 + codeLength);
+        byte[] url = new byte[urlLength];
+        buffer.get(position + 6 + codeLength, url);
+        int tail = position + 6 + codeLength + urlLength;
+        int keyLength = buffer.getShort(tail + 17);
+        byte[] key = new byte[keyLength > 0 ? keyLength : codeLength];
+        buffer.get(keyLength > 0 ? tail + 19 : position + 2, key);
+        return new HotLink(new String(url, StandardCharsets.UTF_8), buffer.getLong(tail),
+                (buffer.get(tail + 16) & FLAG_ONE_TIME) != 0, new String(key, StandardCharsets.UTF_8));
+    }
+
+    private long validUntil(long offset) {
+        int position = (int) offset;
+        int codeLength = buffer.getShort(position);
+        int urlLength = buffer.getInt(position + 2 + codeLength);
+        return buffer.getLong(position + 6 + codeLength + urlLength + 8);
+    }
+
+    private int recordSize(long offset) {
+        int position = (int) offset;
+        int codeLength = buffer.getShort(position);
+        int urlLength = buffer.getInt(position + 2 + codeLength);
+        int keyLength = buffer.getShort(position + 6 + codeLength + urlLength + 17);
+        return 2 + codeLength + 4 + urlLength + 8 + 8 + 1 + 2 + keyLength;
+    }
+
+    private void addHeader(int field, long delta) {
+        buffer.putLong(field, buffer.getLong(field) + delta);
+    }
+
+    private static int slotPosition(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    // FNV-1a with a murmur3 finalizer; 0 is reserved for empty slots
+    private static long hash(byte[] bytes) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : bytes) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0L ? 1L : h;
+    }
+}
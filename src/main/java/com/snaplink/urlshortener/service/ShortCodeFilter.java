@@ -0,0 +1,334 @@
+package com.snaplink.urlshortener.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.snaplink.urlshortener.repository.UrlStore;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory Bloom filter of existing short codes, so lookups of codes that do not exist
+ * (typos, scanners, bots) can be answered without Bigtable I/O.
+ * <p>
+ * The filter is a snapshot built from url_tracking row keys, plus the codes this instance
+ * created since. Codes created on other instances after the scan started are missing from
+ * it, so a miss is only trusted where it is provably complete:
+ * <ul>
+ *   <li>Generated codes whose ID was leased well before the scan started. Leases are abandoned
+ *   after {@code app.short-code.lease-max-age-ms}, so such a code was created before the scan.
+ *   Custom codes that look like generated codes already handed out are refused
+ *   ({@link #isReservedForGeneratedCodes}), so they cannot fall into that range after the fact.</li>
+ *   <li>Codes the generator never produces (most bot scans). Custom codes are journaled with
+ *   {@link #announce} before they are created, every instance polls the journal each
+ *   {@code announce-poll-interval-ms}, and the creating request only returns after
+ *   {@link #awaitAnnounced} has waited two intervals. A miss is trusted while the last poll
+ *   started less than two intervals ago, so it has seen every custom code handed to a user.</li>
+ * </ul>
+ * Generator-shaped codes above the leased range still go to storage.
+ * <p>
+ * A full key scan runs about once per {@code refresh-interval-ms} across the fleet: every
+ * instance reports a heartbeat each interval and rebuilds at intervals scaled by the number
+ * of live instances, with jitter. Deleted codes remain as false positives until the next
+ * rebuild.
+ */
+@Component
+public class ShortCodeFilter {
+    private static final Logger logger = LoggerFactory.getLogger(ShortCodeFilter.class);
+    // Journal entries older than this are deleted by rebuilds; polls further apart start over
+    private static final long ANNOUNCE_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // Journal keys carry the announcing instance's clock; reads start this much earlier
+    private static final long CLOCK_SKEW_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final UrlStore urlStore;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final boolean enabled;
+    private final double falsePositiveRate;
+    private final long expectedInsertions;
+    private final long refreshIntervalMillis;
+    // Polls start at most this far apart while announced codes are trusted to be known
+    private final long announceVisibilityNanos;
+    // Sequence reads this recent are above every ID other instances trust misses for
+    private final long sequenceMaxAgeNanos;
+    // Sequence samples this old are below every ID handed out after the sample plus lease age
+    private final long sampleMinAgeMillis;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile Snapshot current;
+    // Non-null while a rebuild is scanning; new codes are added to both filters
+    private volatile BloomFilter<CharSequence> building;
+    private volatile long lastBuildCount;
+    private volatile int liveInstances = 1;
+    // Start of the last successful journal poll, and the time since which polls saw every entry
+    private volatile long lastPollNanos;
+    private volatile long announcedSinceMillis = Long.MAX_VALUE;
+    private volatile SequenceSample lastSequence;
+
+    // {sampledAtMillis, sequence}, oldest first; only touched by the scheduled refresh
+    private final Deque<long[]> sequenceSamples = new ArrayDeque<>();
+    private long nextBuildAtMillis;
+    // Where the next journal poll resumes; only touched by the scheduled poll
+    private long pollFromMillis;
+
+    public ShortCodeFilter(
+            UrlStore urlStore,
+            ShortCodeGenerator shortCodeGenerator,
+            MeterRegistry meterRegistry,
+            @Value("${app.short-code-filter.enabled:true}") boolean enabled,
+            @Value("${app.short-code-filter.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${app.short-code-filter.max-bytes:16777216}") long maxBytes,
+            @Value("${app.short-code-filter.refresh-interval-ms:60000}") long refreshIntervalMillis,
+            @Value("${app.short-code-filter.announce-poll-interval-ms:1000}") long announcePollIntervalMillis,
+            @Value("${app.short-code.lease-max-age-ms:60000}") long leaseMaxAgeMillis
+    ) {
+        this.urlStore = urlStore;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.enabled = enabled;
+        this.falsePositiveRate = falsePositiveRate;
+        this.expectedInsertions = capacityFor(maxBytes, falsePositiveRate);
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.announceVisibilityNanos = TimeUnit.MILLISECONDS.toNanos(2 * announcePollIntervalMillis);
+        this.sequenceMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos(leaseMaxAgeMillis);
+        // Twice the lease age leaves room for a code handed out at the end of its lease to be written
+        this.sampleMinAgeMillis = 2 * leaseMaxAgeMillis;
+
+        Gauge.builder("short_code_filter.codes", this, f -> f.lastBuildCount).register(meterRegistry);
+        Gauge.builder("short_code_filter.expected_fpp", this,
+                f -> f.current == null ? 1.0 : f.current.filter.expectedFpp()).register(meterRegistry);
+        Gauge.builder("short_code_filter.live_instances", this, f -> f.liveInstances).register(meterRegistry);
+    }
+
+    /**
+     * Returns false only if the short code definitely does not exist.
+     * Before the first build completes (or when disabled) every code might exist.
+     *
+     * @param shortCode The short code to test
+     * @return True if the code may exist and storage has to be consulted
+     */
+    public boolean mightExist(String shortCode) {
+        Snapshot snapshot = current;
+        if (snapshot == null || snapshot.filter.mightContain(shortCode)) return true;
+        long id = shortCodeGenerator.idOf(shortCode);
+        if (id >= 0) return id >= snapshot.completeBelowId;
+        // Only custom codes take this form, and those are announced before they are created
+        return snapshot.startedMillis < announcedSinceMillis
+                || System.nanoTime() - lastPollNanos >= announceVisibilityNanos;
+    }
+
+    /**
+     * Tells whether a code looks like a generated code whose ID has already been leased.
+     * Such codes must not be taken as custom aliases: misses for them are trusted.
+     *
+     * @param shortCode A requested custom alias or rename target
+     * @return True if the code must be refused
+     */
+    public boolean isReservedForGeneratedCodes(String shortCode) {
+        long id = shortCodeGenerator.idOf(shortCode);
+        return id >= 0 && id < leasedSequence();
+    }
+
+    // Trusted ranges end at sequence samples at least twice the lease age old, so a sample up to
+    // one lease age old is above all of them and is reused instead of read per custom code
+    private long leasedSequence() {
+        SequenceSample sample = lastSequence;
+        long now = System.nanoTime();
+        if (sample == null || now - sample.readAtNanos > sequenceMaxAgeNanos) {
+            sample = new SequenceSample(now, urlStore.peekSequence());
+            lastSequence = sample;
+        }
+        return sample.sequence;
+    }
+
+    /**
+     * Journals custom codes (aliases, rename targets) before they are created, so that other
+     * instances do not take them for definite misses. Pass the result to
+     * {@link #awaitAnnounced} once the codes are written.
+     *
+     * @param shortCodes The custom codes about to be created
+     * @return The {@link System#nanoTime()} from which every instance knows the codes
+     */
+    public long announce(Collection<String> shortCodes) {
+        long announcedAt = System.nanoTime();
+        if (!enabled || shortCodes.isEmpty()) return announcedAt;
+        urlStore.announceShortCodes(shortCodes);
+        return announcedAt + announceVisibilityNanos;
+    }
+
+    /**
+     * Waits until announced codes are known to every instance. Called before the codes are
+     * returned to the user, so no instance answers them as missing.
+     *
+     * @param visibleAtNanos The result of {@link #announce}
+     */
+    public void awaitAnnounced(long visibleAtNanos) {
+        long remaining = visibleAtNanos - System.nanoTime();
+        if (remaining <= 0) return;
+        try {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records a newly created short code. Must be called after the row is written.
+     *
+     * @param shortCode The short code that now exists
+     */
+    public void add(String shortCode) {
+        Snapshot snapshot = current;
+        if (snapshot != null) {
+            snapshot.filter.put(shortCode);
+        }
+        BloomFilter<CharSequence> pending = building;
+        if (pending != null) {
+            pending.put(shortCode);
+        }
+    }
+
+    /**
+     * Reports this instance's heartbeat, samples the ID sequence, and rebuilds the filter
+     * from url_tracking row keys (no cell values are transferred) when this instance's turn
+     * has come.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.short-code-filter.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!enabled) return;
+
+        long started = System.currentTimeMillis();
+        long completeBelowId;
+        try {
+            liveInstances = urlStore.heartbeat(instanceId, 3 * refreshIntervalMillis);
+            long sampledAtNanos = System.nanoTime();
+            long sequence = urlStore.peekSequence();
+            lastSequence = new SequenceSample(sampledAtNanos, sequence);
+            sequenceSamples.addLast(new long[]{started, sequence});
+            completeBelowId = completeBelowId(started);
+        } catch (RuntimeException e) {
+            logger.warn("Short code filter refresh failed; keeping previous filter", e);
+            return;
+        }
+        // The first snapshot only trusts non-generator misses; it is replaced once a sample is old enough
+        boolean firstTrustedIds = current != null && current.completeBelowId == 0 && completeBelowId > 0;
+        if (current != null && started < nextBuildAtMillis && !firstTrustedIds) return;
+        rebuild(started, completeBelowId);
+    }
+
+    /**
+     * Reads the custom codes announced since the previous poll into the filter.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.short-code-filter.announce-poll-interval-ms:1000}")
+    public void pollAnnouncements() {
+        if (!enabled) return;
+
+        long startedNanos = System.nanoTime();
+        long started = System.currentTimeMillis();
+        // After a long gap older entries may be gone, so coverage restarts at the retained window
+        long retainedFrom = started - ANNOUNCE_RETENTION_MILLIS + CLOCK_SKEW_MILLIS;
+        boolean continuous = pollFromMillis >= retainedFrom;
+        long from = continuous ? pollFromMillis : retainedFrom;
+        try {
+            urlStore.forEachAnnouncedShortCode(from, this::add);
+        } catch (RuntimeException e) {
+            logger.warn("Short code announcement poll failed", e);
+            return;
+        }
+        if (!continuous) {
+            announcedSinceMillis = from + CLOCK_SKEW_MILLIS;
+        }
+        pollFromMillis = started - CLOCK_SKEW_MILLIS;
+        lastPollNanos = startedNanos;
+    }
+
+    // Latest sample old enough that every ID below it was created before now; older ones are dropped
+    private long completeBelowId(long now) {
+        long[] usable = null;
+        while (!sequenceSamples.isEmpty() && sequenceSamples.peekFirst()[0] <= now - sampleMinAgeMillis) {
+            usable = sequenceSamples.pollFirst();
+        }
+        if (usable == null) {
+            return current == null ? 0 : current.completeBelowId;
+        }
+        sequenceSamples.addFirst(usable);
+        return usable[1];
+    }
+
+    private void rebuild(long started, long completeBelowId) {
+        BloomFilter<CharSequence> next = newFilter();
+        // Publish before scanning so codes created during the scan are not lost
+        building = next;
+        try {
+            long[] count = {0};
+            urlStore.forEachShortCode(code -> {
+                next.put(code);
+                count[0]++;
+            });
+            // Announced codes polled into the previous snapshot may have been created after the scan passed them
+            urlStore.forEachAnnouncedShortCode(started - ANNOUNCE_RETENTION_MILLIS, next::put);
+            current = new Snapshot(next, completeBelowId, started);
+            lastBuildCount = count[0];
+            if (count[0] > expectedInsertions) {
+                logger.warn("Short code filter holds {} codes but is sized for {}; false-positive rate is now {}",
+                        count[0], expectedInsertions, next.expectedFpp());
+            }
+            logger.debug("Rebuilt short code filter with {} codes in {} ms", count[0], System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            logger.warn("Short code filter rebuild failed; keeping previous filter", e);
+        } finally {
+            building = null;
+        }
+        try {
+            urlStore.deleteAnnouncementsBefore(started - ANNOUNCE_RETENTION_MILLIS - CLOCK_SKEW_MILLIS);
+        } catch (RuntimeException e) {
+            logger.warn("Could not delete old short code announcements", e);
+        }
+        // On average one instance of the fleet rebuilds per interval
+        double jitter = 0.5 + ThreadLocalRandom.current().nextDouble();
+        nextBuildAtMillis = started + (long) (refreshIntervalMillis * liveInstances * jitter);
+    }
+
+    private BloomFilter<CharSequence> newFilter() {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), expectedInsertions, falsePositiveRate);
+    }
+
+    // Largest n whose optimal filter at this false-positive rate fits in the byte budget
+    private static long capacityFor(long maxBytes, double falsePositiveRate) {
+        double bits = maxBytes * 8.0;
+        return Math.max(1, (long) (bits * Math.log(2) * Math.log(2) / -Math.log(falsePositiveRate)));
+    }
+
+    // A filter, the generated-code IDs it is known to be complete for, and when its scan started
+    private static final class Snapshot {
+        final BloomFilter<CharSequence> filter;
+        final long completeBelowId;
+        final long startedMillis;
+
+        Snapshot(BloomFilter<CharSequence> filter, long completeBelowId, long startedMillis) {
+            this.filter = filter;
+            this.completeBelowId = completeBelowId;
+            this.startedMillis = startedMillis;
+        }
+    }
+
+    private static final class SequenceSample {
+        final long readAtNanos;
+        final long sequence;
+
+        SequenceSample(long readAtNanos, long sequence) {
+            this.readAtNanos = readAtNanos;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.snaplink.urlshortener.service;
+
+/**
+ * Strategy for producing new short codes for auto-generated links.
+ * Implementations must be thread-safe and should not need a storage round trip per code.
+ */
+public interface ShortCodeGenerator {
+
+    /**
+     * Returns a short code that this generator has never returned before.
+     *
+     * @return A new short code
+     */
+    String nextCode();
+
+    /**
+     * Returns the ID a code of this generator's format stands for.
+     *
+     * @param shortCode Any short code
+     * @return The ID, or -1 if this generator never produces codes of that form
+     */
+    default long idOf(String shortCode) {
+        return -1;
+    }
+}
@@ -0,0 +1,131 @@
+package com.snaplink.urlshortener.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.snaplink.urlshortener.model.ShortUrl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * In-process cache of resolved short URLs sitting in front of Bigtable.
+ * Uses Caffeine's W-TinyLFU admission so a small set of hot links stays resident,
+ * bounds memory by an estimated byte weight, and remembers unknown codes for a
+ * shorter time (negative caching) so repeated misses do not reach Bigtable.
+ * One-time links are never kept: their state changes on first use and must be read from storage.
+ * Concurrent misses on the same code share one load, whether it is blocking or asynchronous.
+ */
+@Component
+public class ShortUrlCache {
+
+    // Rough per-entry overhead (object headers, map node, Optional wrapper)
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+    // Length of an ISO-8601 instant with millis; dates are weighed at this length so weighing
+    // does not format the date strings of links decoded from compact records
+    private static final int DATE_CHARS = 24;
+
+    private final AsyncCache<String, Optional<ShortUrl>> cache;
+
+    public ShortUrlCache(
+            @Value("${app.cache.short-url.max-bytes:67108864}") long maxBytes,
+            @Value("${app.cache.short-url.ttl-seconds:60}") long ttlSeconds,
+            @Value("${app.cache.short-url.negative-ttl-seconds:10}") long negativeTtlSeconds,
+            MeterRegistry meterRegistry
+    ) {
+        long ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        long negativeTtlNanos = Duration.ofSeconds(negativeTtlSeconds).toNanos();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String code, Optional<ShortUrl> value) -> weigh(code, value))
+                .expireAfter(new Expiry<String, Optional<ShortUrl>>() {
+                    @Override
+                    public long expireAfterCreate(String code, Optional<ShortUrl> value, long currentTime) {
+                        if (value.isEmpty()) return negativeTtlNanos;
+                        // One-time links are only handed to the loading caller, never served from the cache
+                        return value.get().isOneTime() ? 0L : ttlNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String code, Optional<ShortUrl> value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(code, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String code, Optional<ShortUrl> value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                // Blocking loads run on the calling thread, as with a synchronous cache
+                .executor(Runnable::run)
+                .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "short_url_cache");
+    }
+
+    /**
+     * Returns the cached short URL for a code, loading it on a miss.
+     * A loader result of {@code null} is cached as a negative entry.
+     *
+     * @param shortCode The short code to resolve
+     * @param loader Function that reads the short URL from storage
+     * @return The short URL, or null if the code does not exist
+     */
+    public ShortUrl get(String shortCode, Function<String, ShortUrl> loader) {
+        return cache.synchronous().get(shortCode, code -> Optional.ofNullable(loader.apply(code))).orElse(null);
+    }
+
+    /**
+     * Returns the cached short URL for a code without blocking, loading it on a miss.
+     * A failed load is not cached.
+     *
+     * @param shortCode The short code to resolve
+     * @param loader Function that starts reading the short URL from storage
+     * @return A future of the short URL, or of null if the code does not exist
+     */
+    public CompletableFuture<ShortUrl> getAsync(String shortCode, Function<String, CompletableFuture<ShortUrl>> loader) {
+        return cache.get(shortCode, (code, executor) -> loader.apply(code).thenApply(Optional::ofNullable))
+                .thenApply(url -> url.orElse(null));
+    }
+
+    /**
+     * Drops any cached entry (positive or negative) for a code.
+     *
+     * @param shortCode The short code to invalidate
+     */
+    public void invalidate(String shortCode) {
+        cache.synchronous().invalidate(shortCode);
+    }
+
+    /**
+     * Returns hit, miss, and eviction counters for the cache.
+     *
+     * @return A snapshot of the cache statistics
+     */
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    private static int weigh(String code, Optional<ShortUrl> value) {
+        long chars = code.length();
+        if (value.isPresent()) {
+            ShortUrl url = value.get();
+            chars += length(url.getLongUrl()) + length(url.getUserId()) + 2 * DATE_CHARS
+                    + length(url.getCustomAlias()) + length(url.getShortCode());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, ENTRY_OVERHEAD_BYTES + chars * 2);
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
@@ -1,17 +1,20 @@
 package com.snaplink.urlshortener.service;
 
+import com.snaplink.urlshortener.model.ClickEvent;
+import com.snaplink.urlshortener.model.CursorPage;
 import com.snaplink.urlshortener.model.ShortUrl;
 import com.snaplink.urlshortener.model.ShortUrlDto;
-import com.snaplink.urlshortener.repository.BigtableRepository;
+import com.snaplink.urlshortener.repository.ClickStore;
+import com.snaplink.urlshortener.repository.UrlStore;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
 /**
@@ -21,97 +24,188 @@ import java.util.stream.Collectors;
 @Service
 public class UrlShortenerService {
 
-    private final BigtableRepository bigtableRepository;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_GENERATE_ATTEMPTS = 5;
 
-    @Autowired
-    public UrlShortenerService(BigtableRepository bigtableRepository) {
-        this.bigtableRepository = bigtableRepository;
-    }
+    private final UrlStore urlStore;
+    private final ClickStore clickStore;
+    private final ShortUrlCache shortUrlCache;
+    private final ClickIngestionPipeline clickPipeline;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final ShortCodeFilter shortCodeFilter;
+    private final HotLinkTable hotLinkTable;
+    private final ExpiryPolicy expiryPolicy;
 
-    // Generate short code from long URL hash
-    public String generateShortCode(String longUrl) {
-        return Integer.toHexString(longUrl.hashCode()).substring(0, 6);
+    @Autowired
+    public UrlShortenerService(UrlStore urlStore,
+                               ClickStore clickStore,
+                               ShortUrlCache shortUrlCache,
+                               ClickIngestionPipeline clickPipeline,
+                               ShortCodeGenerator shortCodeGenerator,
+                               ShortCodeFilter shortCodeFilter,
+                               HotLinkTable hotLinkTable,
+                               ExpiryPolicy expiryPolicy) {
+        this.urlStore = urlStore;
+        this.clickStore = clickStore;
+        this.shortUrlCache = shortUrlCache;
+        this.clickPipeline = clickPipeline;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.shortCodeFilter = shortCodeFilter;
+        this.hotLinkTable = hotLinkTable;
+        this.expiryPolicy = expiryPolicy;
     }
 
-    // Create Short URL
+    // Create Short URL (auto-generated code)
     public ShortUrl createShortUrl(String longUrl, String userId, boolean oneTime, String expirationDate) {
-        String shortCode = generateShortCode(longUrl);
-        return createShortUrlWithCode(shortCode, longUrl, userId, oneTime, expirationDate);
+        // Generated codes are unique; a retry only happens if a custom alias already took the code
+        for (int attempt = 0; attempt < MAX_GENERATE_ATTEMPTS; attempt++) {
+            ShortUrl url = createShortUrlWithCode(shortCodeGenerator.nextCode(), longUrl, userId, oneTime, expirationDate);
+            if (url != null) {
+                return url;
+            }
+        }
+        throw new IllegalStateException("Could not allocate a free short code.");
     }
 
     // Create Short URL (custom code)
     public ShortUrl createCustomShortUrl(String customShortCode, String longUrl, String userId, boolean oneTime, String expirationDate) {
-        if (bigtableRepository.existsByShortCode(customShortCode)) {
+        if (shortCodeFilter.isReservedForGeneratedCodes(customShortCode)) {
+            throw new IllegalArgumentException("Short code '" + customShortCode + "' is reserved for generated links.");
+        }
+        long visibleAt = shortCodeFilter.announce(List.of(customShortCode));
+        ShortUrl url = createShortUrlWithCode(customShortCode, longUrl, userId, oneTime, expirationDate);
+        if (url == null) {
             throw new IllegalArgumentException("Short code '" + customShortCode + "' is already in use.");
         }
-        return createShortUrlWithCode(customShortCode, longUrl, userId, oneTime, expirationDate);
+        shortCodeFilter.awaitAnnounced(visibleAt);
+        return url;
     }
 
     // Helper method to create and persist a ShortUrl object given a short code.
+    // Returns null if the short code is already taken.
     private ShortUrl createShortUrlWithCode(String shortCode, String longUrl, String userId, boolean oneTime, String expirationDate) {
-        String creationDate = Instant.now().toString();
-        String finalExpirationDate = (expirationDate != null && !expirationDate.isEmpty())
-                ? expirationDate
-                : "2030-01-01T00:00:00Z";  // Default expiration date if not provided
+        Instant now = Instant.now();
+        String creationDate = now.toString();
+        // Plan limits are applied once here and stored, so redirects only compare timestamps
+        String finalExpirationDate = expiryPolicy.expirationFor(userId, expirationDate, now.toEpochMilli());
 
         // Create the ShortUrl object
         ShortUrl url = new ShortUrl(shortCode, longUrl, userId, creationDate, finalExpirationDate, oneTime, true, shortCode);
 
-        // Save to Bigtable
-        bigtableRepository.createShortUrl(url);
+        // Save to Bigtable and drop any negative cache entry for the code
+        if (!urlStore.createShortUrl(url)) {
+            return null;
+        }
+        shortCodeFilter.add(shortCode);
+        shortUrlCache.invalidate(shortCode);
+        hotLinkTable.put(url);
         return url;
     }
 
-    // Get Short URL by code
+    // Get Short URL by code (served from the in-process cache when possible).
+    // The returned object may be shared with other requests, so callers must not modify it.
     public ShortUrl getShortUrl(String shortCode) {
-        return bigtableRepository.getShortUrl(shortCode);
+        // Definite filter misses cost nothing to repeat, so they are not negative-cached
+        if (!shortCodeFilter.mightExist(shortCode)) return null;
+        return shortUrlCache.get(shortCode, urlStore::getShortUrlForRedirect);
+    }
+
+    /**
+     * Non-blocking {@link #getShortUrl(String)}: a cache miss starts an asynchronous storage
+     * read instead of holding the calling thread. The same sharing rules apply to the result.
+     *
+     * @param shortCode The short code to resolve
+     * @return A future of the link, or of null if the code does not exist
+     */
+    public CompletableFuture<ShortUrl> getShortUrlAsync(String shortCode) {
+        if (!shortCodeFilter.mightExist(shortCode)) return CompletableFuture.completedFuture(null);
+        return shortUrlCache.getAsync(shortCode, urlStore::getShortUrlForRedirectAsync);
+    }
+
+    /**
+     * Uses up a one-time link without blocking. The decision is made by storage with a
+     * conditional mutation, never from a cached copy, so concurrent clicks yield exactly
+     * one redirect. The future may complete on a storage callback thread.
+     *
+     * @param shortCode The one-time link being redirected
+     * @return A future of whether this caller consumed the link and may redirect
+     */
+    public CompletableFuture<Boolean> consumeOneTimeLinkAsync(String shortCode) {
+        // One-time links are never put in the hot link table, so only the heap cache is invalidated
+        return urlStore.consumeOneTimeLinkAsync(shortCode).whenComplete((consumed, error) ->
+                shortUrlCache.invalidate(shortCode));
     }
 
     // Delete Short URL by code
     public void deleteShortUrl(String shortCode) {
-        bigtableRepository.deleteShortUrl(shortCode);
+        urlStore.deleteShortUrl(shortCode);
+        shortUrlCache.invalidate(shortCode);
+        hotLinkTable.remove(shortCode);
     }
 
-    // Retrieve all short URLs for a specific user by his ID (Sorted by creationDate descending)
+    // Retrieve all short URLs for a specific user by his ID (the per-user index is already newest first)
     public List<ShortUrl> getAllUrlsByUser(String userId) {
-        return bigtableRepository.getAllUrlsByUserId(userId).stream()
-        .sorted((a, b) -> b.getCreationDate().compareTo(a.getCreationDate()))
-        .collect(Collectors.toList());
+        return urlStore.getAllUrlsByUserId(userId);
     }
 
-    // Retrieve all short URLs for a specific user by query (Sorted by creationDate descending)
-    public List<ShortUrl> searchShortUrls(String query) {
-        return bigtableRepository.searchShortUrls(query).stream()
-        .sorted((a, b) -> b.getCreationDate().compareTo(a.getCreationDate()))
-        .collect(Collectors.toList());
+    // Retrieve one page of a user's short URLs with click counts, newest first
+    public CursorPage<ShortUrlDto> getShortUrlsWithClickCountsPage(String userId, int limit, String cursor) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        CursorPage<ShortUrl> page = urlStore.getUrlsByUserIdPage(userId, pageSize, cursor);
+        return new CursorPage<>(withClickCounts(page.getItems()), page.getNextCursor());
     }
 
     public List<ShortUrlDto> getShortUrlsWithClickCounts(String userId) {
-        List<ShortUrl> shortUrls = getAllUrlsByUser(userId);
+        return withClickCounts(getAllUrlsByUser(userId));
+    }
+
+    // Assembles DTOs using one multi-row counter read instead of one read per link
+    private List<ShortUrlDto> withClickCounts(List<ShortUrl> shortUrls) {
+        Map<String, Long> counts = clickStore.getClickCounts(
+                shortUrls.stream().map(ShortUrl::getAnalyticsKey).collect(Collectors.toList()));
         return shortUrls.stream()
-                .map(url -> {
-                    int clicks = bigtableRepository.getClickCount(url.getShortCode());
-                    return new ShortUrlDto(url, clicks);
-                })
+                .map(url -> new ShortUrlDto(url, counts.getOrDefault(url.getAnalyticsKey(), 0L)))
                 .collect(Collectors.toList());
     }
 
     // Check if a short code already exists
     public boolean shortCodeExists(String shortCode) {
-        return bigtableRepository.existsByShortCode(shortCode);
+        return shortCodeFilter.mightExist(shortCode) && urlStore.existsByShortCode(shortCode);
     }
 
     public List<Map<String, String>> getClickDetails(String shortCode) {
-        return bigtableRepository.getClickDetails(shortCode);
+        return clickStore.getClickDetails(analyticsKey(shortCode));
+    }
+
+    /**
+     * Returns the key a link's clicks are stored under: the code it was created with, which
+     * differs from its current code once it has been renamed. Unknown codes map to themselves.
+     *
+     * @param shortCode The current short code
+     * @return The analytics key
+     */
+    public String analyticsKey(String shortCode) {
+        ShortUrl url = getShortUrl(shortCode);
+        return url == null ? shortCode : url.getAnalyticsKey();
     }
 
+    // Captures click metadata on the request thread and hands it to the async pipeline
     public void recordClick(String shortCode, HttpServletRequest request) {
+        clickPipeline.submit(toClickEvent(shortCode, request));
+    }
+
+    // Same as recordClick, but never waits for queue space; for continuations on storage callback threads
+    public void recordClickWithoutWaiting(String shortCode, HttpServletRequest request) {
+        clickPipeline.offer(toClickEvent(shortCode, request));
+    }
+
+    private ClickEvent toClickEvent(String shortCode, HttpServletRequest request) {
         String ipAddress = extractClientIp(request);
         String userAgent = Optional.ofNullable(request.getHeader("User-Agent")).orElse("Unknown");
         String referrer = Optional.ofNullable(request.getHeader("Referer")).orElse("Direct");
         String geoLocation = ""; // TODO: Implement GeoIP service
 
-        bigtableRepository.recordClick(shortCode, ipAddress, referrer, geoLocation, userAgent);
+        return new ClickEvent(shortCode, ipAddress, referrer, geoLocation, userAgent, System.currentTimeMillis());
     }
 
     /**
@@ -137,22 +231,29 @@ public class UrlShortenerService {
         return request.getRemoteAddr(); // Fallback
     }
 
+    /**
+     * Moves a link to a new short code. Storage reserves the new code and claims the old row
+     * with conditional mutations, so concurrent renames and creates cannot both win. Click
+     * history is not copied: the renamed link keeps recording under its analytics key.
+     *
+     * @throws IllegalArgumentException if the old code does not exist or the new code is taken
+     */
     public void updateShortCode(String oldCode, String newCode) {
+        // Cheap pre-check; the conditional create in storage is what decides
         if (shortCodeExists(newCode)) {
             throw new IllegalArgumentException("The new short code is already in use.");
         }
-    
-        ShortUrl existing = getShortUrl(oldCode);
-        if (existing == null) {
-            throw new IllegalArgumentException("Old short code does not exist.");
+        if (shortCodeFilter.isReservedForGeneratedCodes(newCode)) {
+            throw new IllegalArgumentException("The new short code is reserved for generated links.");
         }
-    
-        // Update the shortCode and customAlias
-        existing.setShortCode(newCode);
-        existing.setCustomAlias(newCode);
-    
-        // Recreate using all original info
-        bigtableRepository.createShortUrl(existing); // directly inserts with current values
-        bigtableRepository.deleteShortUrl(oldCode);
+
+        long visibleAt = shortCodeFilter.announce(List.of(newCode));
+        ShortUrl renamed = urlStore.renameShortUrl(oldCode, newCode);
+        shortCodeFilter.add(newCode);
+        shortUrlCache.invalidate(oldCode);
+        shortUrlCache.invalidate(newCode);
+        hotLinkTable.remove(oldCode);
+        hotLinkTable.put(renamed);
+        shortCodeFilter.awaitAnnounced(visibleAt);
     }
 }
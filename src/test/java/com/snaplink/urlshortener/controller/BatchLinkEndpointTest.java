@@ -0,0 +1,60 @@
+package com.snaplink.urlshortener.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("inmemory")
+class BatchLinkEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void ndjsonBatchIsAcceptedWithoutAuthentication() throws Exception {
+        String body = "{\"longUrl\":\"https://example.com/a\",\"userId\":\"batch-user\"}\n"
+                + "{\"longUrl\":\"https://example.com/b\",\"userId\":\"batch-user\",\"customAlias\":\"batch-alias\"}\n"
+                + "{\"longUrl\":\"https://example.com/c\",\"userId\":\"batch-user\",\"customAlias\":\"batch-alias\"}\n"
+                + "{\"userId\":\"batch-user\"}\n";
+
+        MvcResult result = mockMvc.perform(post("/shorten/batch")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn();
+
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : result.getResponse().getContentAsString().split("\n")) {
+            lines.add(objectMapper.readTree(line));
+        }
+        assertEquals(4, lines.size());
+        assertEquals("CREATED", lines.get(0).get("status").asText());
+        assertEquals("CREATED", lines.get(1).get("status").asText());
+        assertEquals("batch-alias", lines.get(1).get("shortUrl").get("shortCode").asText());
+        assertEquals("CONFLICT", lines.get(2).get("status").asText());
+        assertEquals("INVALID", lines.get(3).get("status").asText());
+        for (int i = 0; i < lines.size(); i++) {
+            assertEquals(i, lines.get(i).get("index").asInt());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.snaplink.urlshortener.model;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ShortUrlTest {
+
+    private static final long CREATED = 1_715_678_493_512L;
+    private static final long EXPIRES = 1_893_456_000_000L;
+
+    @Test
+    void datesFromEpochMillisMatchTheStringConstructor() {
+        ShortUrl fromMillis = ShortUrl.fromEpochMillis("code", "https://example.com", "user", CREATED, EXPIRES,
+                false, true, "code");
+        ShortUrl fromStrings = new ShortUrl("code", "https://example.com", "user", "2024-05-14T09:21:33.512Z",
+                "2030-01-01T00:00:00Z", false, true, "code");
+
+        assertEquals(fromStrings.getCreationMillis(), fromMillis.getCreationMillis());
+        assertEquals(fromStrings.getExpirationMillis(), fromMillis.getExpirationMillis());
+        assertEquals(fromStrings.getCreationDate(), fromMillis.getCreationDate());
+        assertEquals(fromStrings.getExpirationDate(), fromMillis.getExpirationDate());
+    }
+
+    @Test
+    void linkWithoutExpirationHasNoExpirationDate() {
+        ShortUrl url = ShortUrl.fromEpochMillis("code", "https://example.com", "user", CREATED, Long.MAX_VALUE,
+                false, true, "code");
+
+        assertNull(url.getExpirationDate());
+        assertFalse(url.isExpiredAt(EXPIRES));
+    }
+
+    @Test
+    void settingOneDateKeepsTheOther() {
+        ShortUrl url = ShortUrl.fromEpochMillis("code", "https://example.com", "user", CREATED, EXPIRES,
+                false, true, "code");
+        url.setExpirationDate(null);
+
+        assertEquals("2024-05-14T09:21:33.512Z", url.getCreationDate());
+        assertEquals(CREATED, url.getCreationMillis());
+        assertNull(url.getExpirationDate());
+        assertEquals(Long.MAX_VALUE, url.getExpirationMillis());
+    }
+}
@@ -0,0 +1,36 @@
+package com.snaplink.urlshortener.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickRowKeysTest {
+
+    private final ClickRowKeys keys = new ClickRowKeys(ClickRowKeys.Scheme.BUCKETED, 16, true);
+
+    @Test
+    void cursorKeysOfTheLinkAreAccepted() {
+        assertTrue(keys.isClickKeyOf("abc", keys.bucketedKey(7, "abc", 1_700_000_000_000L, "00000000beef")));
+        assertTrue(keys.isClickKeyOf("abc", keys.legacyPrefix("abc") + ClickRowKeys.legacyTimestamp(1_700_000_000_000L)));
+    }
+
+    @Test
+    void malformedCursorKeysAreRejected() {
+        String prefix = keys.bucketPrefix(3, "abc");
+        // Too short for a timestamp: ClickRowKeys.sortKey would index before the start of the key
+        assertFalse(keys.isClickKeyOf("abc", prefix + "1#x"));
+        assertFalse(keys.isClickKeyOf("abc", prefix + ClickRowKeys.reversedTimestamp(1_700_000_000_000L)));
+        assertFalse(keys.isClickKeyOf("abc", prefix + ClickRowKeys.reversedTimestamp(1_700_000_000_000L) + "#"));
+        assertFalse(keys.isClickKeyOf("abc", prefix + "not-a-timestamp-19c#beef"));
+        assertFalse(keys.isClickKeyOf("abc", keys.legacyPrefix("abc") + "yesterday"));
+        assertFalse(keys.isClickKeyOf("abc", "garbage"));
+    }
+
+    @Test
+    void cursorKeysOfAnotherLinkAreRejected() {
+        assertFalse(keys.isClickKeyOf("abc", keys.bucketedKey(7, "other", 1_700_000_000_000L, "00000000beef")));
+        assertFalse(keys.isClickKeyOf("abc", keys.bucketedKey(7, "abcd", 1_700_000_000_000L, "00000000beef")));
+        assertFalse(keys.isClickKeyOf("abc", keys.legacyPrefix("other") + ClickRowKeys.legacyTimestamp(1_700_000_000_000L)));
+    }
+}
@@ -0,0 +1,58 @@
+package com.snaplink.urlshortener.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HedgedReadsTest {
+
+    @Test
+    void stuckReadIsAnsweredByTheHedge() throws Exception {
+        try (HedgedReads hedged = new HedgedReads(true, 0.95, 5, 5, 100, new SimpleMeterRegistry())) {
+            AtomicInteger attempts = new AtomicInteger();
+            CompletableFuture<String> result = hedged.read(() -> attempts.incrementAndGet() == 1
+                    ? new CompletableFuture<>()
+                    : CompletableFuture.completedFuture("hedge"));
+
+            assertEquals("hedge", result.get(1, TimeUnit.SECONDS));
+            assertEquals(2, attempts.get());
+        }
+    }
+
+    @Test
+    void hedgesStayWithinTheExtraLoadBudget() throws Exception {
+        try (HedgedReads hedged = new HedgedReads(true, 0.95, 1, 1, 10, new SimpleMeterRegistry())) {
+            AtomicInteger attempts = new AtomicInteger();
+            for (int i = 0; i < 100; i++) {
+                // Nothing ever answers, so every read asks for a hedge
+                hedged.read(() -> {
+                    attempts.incrementAndGet();
+                    return new CompletableFuture<String>();
+                });
+            }
+            Thread.sleep(200);
+
+            int hedges = attempts.get() - 100;
+            assertTrue(hedges > 0 && hedges <= 10, "hedges sent: " + hedges);
+        }
+    }
+
+    @Test
+    void failureIsReportedWhenNoOtherAttemptIsOutstanding() {
+        try (HedgedReads hedged = new HedgedReads(true, 0.95, 5, 5, 100, new SimpleMeterRegistry())) {
+            CompletableFuture<String> result = hedged.read(
+                    () -> CompletableFuture.failedFuture(new IllegalStateException("unavailable")));
+
+            ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(1, TimeUnit.SECONDS));
+            assertTrue(error.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.snaplink.urlshortener.repository;
+
+import com.snaplink.urlshortener.model.ShortUrl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OneTimeLinkConsumptionTest {
+
+    private static final int THREADS = 32;
+    private static final int ROUNDS = 200;
+
+    @Test
+    void burstOfClicksConsumesEachLinkExactlyOnce() throws Exception {
+        InMemoryRepository repository = new InMemoryRepository();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                String code = "once" + round;
+                assertTrue(repository.createShortUrl(new ShortUrl(code, "https://example.com", "user",
+                        "2024-01-01T00:00:00Z", null, true, true, code)));
+
+                // Release all clicks at once to maximize contention on the same link
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> clicks = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    clicks.add(pool.submit(() -> {
+                        start.await();
+                        return repository.consumeOneTimeLink(code);
+                    }));
+                }
+                start.countDown();
+
+                int consumed = 0;
+                for (Future<Boolean> click : clicks) {
+                    if (click.get()) consumed++;
+                }
+                assertEquals(1, consumed, "redirects granted for " + code);
+                assertFalse(repository.getShortUrl(code).isActive());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void missingLinkIsNeverConsumed() {
+        assertFalse(new InMemoryRepository().consumeOneTimeLink("missing"));
+    }
+}
@@ -0,0 +1,63 @@
+package com.snaplink.urlshortener.repository;
+
+import com.snaplink.urlshortener.model.ClickEvent;
+import com.snaplink.urlshortener.model.ShortUrl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenamedLinkAnalyticsTest {
+
+    @Test
+    void oldCodeOfRenamedLinkCannotBeCreatedAgain() {
+        InMemoryRepository repository = new InMemoryRepository();
+        assertTrue(repository.createShortUrl(link("old", "owner")));
+        repository.recordClicks(clicks("old", 3));
+
+        ShortUrl renamed = repository.renameShortUrl("old", "new");
+        assertEquals("old", renamed.getAnalyticsKey());
+
+        assertFalse(repository.createShortUrl(link("old", "someone-else")));
+        assertEquals(List.of(false), repository.createShortUrls(List.of(link("old", "someone-else"))));
+        assertTrue(repository.existsByShortCode("old"));
+
+        repository.recordClicks(clicks(renamed.getAnalyticsKey(), 1));
+        assertEquals(4, repository.getClickCount("old"));
+    }
+
+    @Test
+    void intermediateCodeIsReusedWithItsOwnCounts() {
+        InMemoryRepository repository = new InMemoryRepository();
+        assertTrue(repository.createShortUrl(link("first", "owner")));
+        repository.recordClicks(clicks("first", 3));
+        repository.renameShortUrl("first", "second");
+        ShortUrl renamed = repository.renameShortUrl("second", "third");
+        assertEquals("first", renamed.getAnalyticsKey());
+
+        // "second" never held click history of its own, so it is free again
+        assertTrue(repository.createShortUrl(link("second", "someone-else")));
+        ShortUrl reused = repository.getShortUrl("second");
+        assertEquals("second", reused.getAnalyticsKey());
+        repository.recordClicks(clicks(reused.getAnalyticsKey(), 2));
+
+        assertEquals(3, repository.getClickCount(renamed.getAnalyticsKey()));
+        assertEquals(2, repository.getClickCount(reused.getAnalyticsKey()));
+    }
+
+    private static ShortUrl link(String code, String userId) {
+        return new ShortUrl(code, "https://example.com/" + code, userId, "2024-01-01T00:00:00Z", null, false, true, code);
+    }
+
+    private static List<ClickEvent> clicks(String analyticsKey, int count) {
+        List<ClickEvent> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            events.add(new ClickEvent(analyticsKey, "127.0.0.1", "", "", "JUnit", 1_700_000_000_000L + i));
+        }
+        return events;
+    }
+}
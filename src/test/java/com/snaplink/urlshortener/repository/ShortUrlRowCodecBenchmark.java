@@ -0,0 +1,105 @@
+package com.snaplink.urlshortener.repository;
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import com.snaplink.urlshortener.model.ShortUrl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode cost of a url#<code> row in the legacy and compact layouts, as seen on the redirect path.
+ * {@code main} also prints the stored bytes per row of each layout before running.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.snaplink.urlshortener.repository.ShortUrlRowCodecBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShortUrlRowCodecBenchmark {
+
+    private Row legacyRow;
+    private Row compactRow;
+
+    @Setup
+    public void setUp() {
+        ShortUrl url = sampleUrl();
+        legacyRow = toRow(url, ShortUrlRowCodec.Encoding.LEGACY);
+        compactRow = toRow(url, ShortUrlRowCodec.Encoding.COMPACT);
+    }
+
+    @Benchmark
+    public ShortUrl decodeLegacy() {
+        return ShortUrlRowCodec.decode(legacyRow);
+    }
+
+    @Benchmark
+    public ShortUrl decodeCompact() {
+        return ShortUrlRowCodec.decode(compactRow);
+    }
+
+    private static ShortUrl sampleUrl() {
+        return new ShortUrl("aZ3kP9q", "https://www.example.com/articles/2024/05/some-long-article-slug?utm_source=newsletter",
+                "user-4f1c2a", "2024-05-14T09:21:33.512Z", "2030-01-01T00:00:00Z", false, true, "aZ3kP9q");
+    }
+
+    // Builds the row Bigtable would return for a link written in the given layout
+    private static Row toRow(ShortUrl url, ShortUrlRowCodec.Encoding encoding) {
+        List<RowCell> cells = new ArrayList<>();
+        if (encoding == ShortUrlRowCodec.Encoding.COMPACT) {
+            cells.add(cell("url_info", ShortUrlRowCodec.RECORD_QUALIFIER, ShortUrlRowCodec.encode(url)));
+        } else {
+            cells.add(cell("url_info", "long_url", ByteString.copyFromUtf8(url.getLongUrl())));
+            cells.add(cell("url_info", "creation_date", ByteString.copyFromUtf8(url.getCreationDate())));
+            cells.add(cell("url_info", "expiration_date", ByteString.copyFromUtf8(url.getExpirationDate())));
+            cells.add(cell("url_info", "one_time", ByteString.copyFromUtf8(String.valueOf(url.isOneTime()))));
+            cells.add(cell("user_info", "user_id", ByteString.copyFromUtf8(url.getUserId())));
+        }
+        cells.add(cell("url_info", "is_active", ByteString.copyFromUtf8(String.valueOf(url.isActive()))));
+        cells.sort(RowCell.compareByNative());
+        return Row.create(ByteString.copyFromUtf8("url#" + url.getShortCode()), cells);
+    }
+
+    private static RowCell cell(String family, String qualifier, ByteString value) {
+        return RowCell.create(family, ByteString.copyFromUtf8(qualifier), 0L, Collections.emptyList(), value);
+    }
+
+    // Family, qualifier, timestamp and value of every cell: what Bigtable stores and returns per row
+    private static int storedBytes(Row row) {
+        int bytes = row.getKey().size();
+        for (RowCell cell : row.getCells()) {
+            bytes += cell.getFamily().length() + cell.getQualifier().size() + Long.BYTES + cell.getValue().size();
+        }
+        return bytes;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        ShortUrl url = sampleUrl();
+        System.out.printf("Bytes per row: legacy=%d compact=%d%n",
+                storedBytes(toRow(url, ShortUrlRowCodec.Encoding.LEGACY)),
+                storedBytes(toRow(url, ShortUrlRowCodec.Encoding.COMPACT)));
+
+        new Runner(new OptionsBuilder()
+                .include(ShortUrlRowCodecBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
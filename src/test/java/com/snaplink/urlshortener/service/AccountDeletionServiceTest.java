@@ -0,0 +1,74 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.AccountDeletionStatus;
+import com.snaplink.urlshortener.model.AccountDeletionStatus.State;
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.model.User;
+import com.snaplink.urlshortener.repository.InMemoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccountDeletionServiceTest {
+
+    private static final String EMAIL = "owner@example.com";
+
+    @Test
+    void deletionThatFailsOnAPageCompletesWhenStartedAgain() throws InterruptedException {
+        // The second page of clicks fails once, after the first page is gone
+        AtomicInteger clickDeletes = new AtomicInteger();
+        InMemoryRepository store = new InMemoryRepository() {
+            @Override
+            public long deleteClickData(Collection<String> shortCodes) {
+                if (clickDeletes.incrementAndGet() == 2) throw new IllegalStateException("Bigtable unavailable");
+                return super.deleteClickData(shortCodes);
+            }
+        };
+        store.createUser(new User("u1", "owner", EMAIL, "hash", "demo", LocalDateTime.now()));
+        for (int i = 0; i < 5; i++) {
+            store.createShortUrl(new ShortUrl("code" + i, "https://example.com/" + i, "u1",
+                    "2024-01-0" + (i + 1) + "T00:00:00Z", null, false, true, "code" + i));
+        }
+        AccountDeletionService service = new AccountDeletionService(store, store, store,
+                new ShortUrlCache(1 << 20, 60, 10, new SimpleMeterRegistry()), disabledHotLinkTable(store), 2, 1, 60);
+
+        service.startDeletion(EMAIL);
+        AccountDeletionStatus failed = awaitFinished(service);
+        assertEquals(State.FAILED, failed.getState());
+        assertEquals(2, failed.getLinksDeleted());
+        assertTrue(store.findByEmail(EMAIL).isPresent());
+
+        service.startDeletion(EMAIL);
+        AccountDeletionStatus completed = awaitFinished(service);
+        assertEquals(State.COMPLETED, completed.getState());
+        assertEquals(3, completed.getLinksDeleted());
+        assertTrue(store.getAllUrlsByUserId("u1").isEmpty());
+        for (int i = 0; i < 5; i++) {
+            assertFalse(store.existsByShortCode("code" + i));
+        }
+        assertFalse(store.existsByEmail(EMAIL));
+        assertFalse(store.existsByUsername("owner"));
+        service.shutdown();
+    }
+
+    private static AccountDeletionStatus awaitFinished(AccountDeletionService service) throws InterruptedException {
+        for (int i = 0; i < 500; i++) {
+            AccountDeletionStatus status = service.getStatus(EMAIL).orElseThrow();
+            if (status.getState() != State.RUNNING) return status;
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Account deletion did not finish");
+    }
+
+    private static HotLinkTable disabledHotLinkTable(InMemoryRepository store) {
+        return new HotLinkTable(store, new CoarseClock(60_000), new SimpleMeterRegistry(), false, "unused", 64,
+                1 << 16, 0.7, 600, 0.3, false);
+    }
+}
@@ -0,0 +1,29 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.ClickEvent;
+import com.snaplink.urlshortener.repository.InMemoryRepository;
+import com.snaplink.urlshortener.service.ClickIngestionPipeline.BackpressurePolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClickIngestionPipelineTest {
+
+    @Test
+    void offerNeverWaitsForQueueSpaceUnderBlockPolicy() {
+        // Workers are never started, so the single queue slot stays taken
+        ClickIngestionPipeline pipeline = new ClickIngestionPipeline(new InMemoryRepository(), new SimpleMeterRegistry(),
+                1, 1, 500, 1 << 20, 200, BackpressurePolicy.BLOCK, 10, 10_000, 10);
+        assertTrue(pipeline.offer(click()));
+
+        long started = System.nanoTime();
+        assertFalse(pipeline.offer(click()));
+        assertTrue(System.nanoTime() - started < 1_000_000_000L);
+    }
+
+    private static ClickEvent click() {
+        return new ClickEvent("code", "127.0.0.1", "Direct", "", "JUnit", System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,116 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.repository.InMemoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class HotLinkTableTest {
+
+    private static final long TTL_SECONDS = 600;
+
+    @TempDir
+    Path dir;
+
+    private final ManualClock clock = new ManualClock(System.currentTimeMillis());
+
+    @Test
+    void storesOnlyActiveReusableLinks() {
+        HotLinkTable table = open();
+        try {
+            table.put(link("plain", false, true));
+            table.offer(link("one-time", true, true));
+            table.put(link("inactive", false, false));
+
+            assertEquals("https://example.com/plain", table.get("plain").getLongUrl());
+            assertNull(table.get("one-time"));
+            assertNull(table.get("inactive"));
+
+            table.remove("plain");
+            assertNull(table.get("plain"));
+        } finally {
+            table.close();
+        }
+    }
+
+    @Test
+    void entriesAreNotTrustedAfterTheirTtl() {
+        HotLinkTable table = open();
+        try {
+            table.put(link("plain", false, true));
+            clock.now += TTL_SECONDS * 1000;
+            assertEquals("https://example.com/plain", table.get("plain").getLongUrl());
+
+            clock.now += 1;
+            assertNull(table.get("plain"));
+        } finally {
+            table.close();
+        }
+    }
+
+    @Test
+    void compactionAndCleanRestartKeepLiveEntries() {
+        HotLinkTable table = open();
+        try {
+            table.put(link("plain", false, true));
+            // Overwrites leave enough dead bytes to pass the compaction threshold
+            for (int i = 0; i < 3; i++) {
+                table.put(link("churn", false, true));
+            }
+            table.remove("churn");
+            table.compact();
+        } finally {
+            table.close();
+        }
+
+        HotLinkTable reopened = open();
+        try {
+            assertEquals("https://example.com/plain", reopened.get("plain").getLongUrl());
+            assertNull(reopened.get("churn"));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void disabledTableIsAlwaysAMiss() {
+        HotLinkTable table = new HotLinkTable(new InMemoryRepository(), clock, new SimpleMeterRegistry(), false,
+                dir.resolve("unused.bin").toString(), 64, 1 << 16, 0.7, TTL_SECONDS, 0.3, false);
+        table.put(link("plain", false, true));
+
+        assertNull(table.get("plain"));
+        table.compact();
+        table.close();
+    }
+
+    private HotLinkTable open() {
+        return new HotLinkTable(new InMemoryRepository(), clock, new SimpleMeterRegistry(), true,
+                dir.resolve("hot-links.bin").toString(), 64, 1 << 16, 0.7, TTL_SECONDS, 0.3, false);
+    }
+
+    private static ShortUrl link(String code, boolean oneTime, boolean active) {
+        return new ShortUrl(code, "https://example.com/" + code, "user", "2024-01-01T00:00:00Z", null, oneTime,
+                active, code);
+    }
+
+    // Time moves only when the test says so
+    private static final class ManualClock extends CoarseClock {
+        long now;
+
+        ManualClock(long now) {
+            super(60_000);
+            this.now = now;
+        }
+
+        @Override
+        public long millis() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.snaplink.urlshortener.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeasedRangeShortCodeGeneratorTest {
+
+    // Kept small for the regular build; run with -Dshortcode.collision.count=20000000 for the full check
+    private static final int CODE_COUNT = Integer.getInteger("shortcode.collision.count", 200_000);
+    private static final int THREADS = 8;
+    private static final int MIN_LENGTH = 7;
+
+    @Test
+    void generatesNoDuplicatesAcrossThreads() throws Exception {
+        AtomicLong sequence = new AtomicLong();
+        LeasedRangeShortCodeGenerator generator =
+                new LeasedRangeShortCodeGenerator(size -> sequence.getAndAdd(size), 1000, MIN_LENGTH, 60_000);
+        long offset = Base62.minValueForLength(MIN_LENGTH);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            results.add(pool.submit(() -> {
+                long[] ids = new long[CODE_COUNT / THREADS];
+                for (int i = 0; i < ids.length; i++) {
+                    String code = generator.nextCode();
+                    assertTrue(code.length() >= MIN_LENGTH, code);
+                    ids[i] = Base62.decode(code) - offset;
+                }
+                return ids;
+            }));
+        }
+
+        // Decoding is the inverse of encoding, so distinct IDs mean distinct codes
+        BitSet seen = new BitSet();
+        long generated = 0;
+        for (Future<long[]> result : results) {
+            for (long id : result.get()) {
+                assertTrue(id >= 0 && id < Integer.MAX_VALUE, "unexpected id " + id);
+                assertFalse(seen.get((int) id), "duplicate code for id " + id);
+                seen.set((int) id);
+                generated++;
+            }
+        }
+        pool.shutdown();
+
+        assertEquals((long) (CODE_COUNT / THREADS) * THREADS, generated);
+    }
+
+    @Test
+    void base62RoundTrips() {
+        long[] samples = {0, 1, 61, 62, 3843, 3844, Base62.minValueForLength(MIN_LENGTH), Long.MAX_VALUE};
+        for (long value : samples) {
+            assertEquals(value, Base62.decode(Base62.encode(value)));
+        }
+        assertEquals(MIN_LENGTH, Base62.encode(Base62.minValueForLength(MIN_LENGTH)).length());
+    }
+}
@@ -0,0 +1,174 @@
+package com.snaplink.urlshortener.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MappedLinkTableTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final long VALID = NOW + 60_000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void putGetAndOverwrite() throws IOException {
+        try (MappedLinkTable table = open(64, 1 << 16, 0.7)) {
+            assertTrue(table.put("abc", link("https://example.com/1", "abc"), VALID, true));
+            assertTrue(table.put("renamed", link("https://example.com/2", "original"), VALID, true));
+            assertNull(table.get("missing", NOW));
+
+            HotLink renamed = table.get("renamed", NOW);
+            assertEquals("https://example.com/2", renamed.getLongUrl());
+            assertEquals("original", renamed.getAnalyticsKey());
+            assertEquals(Long.MAX_VALUE, renamed.getExpiresAtMillis());
+            assertEquals("abc", table.get("abc", NOW).getAnalyticsKey());
+
+            long usedBeforeOverwrite = table.dataBytesUsed();
+            assertTrue(table.put("abc", link("https://example.com/3", "abc"), VALID, true));
+            assertEquals("https://example.com/3", table.get("abc", NOW).getLongUrl());
+            assertEquals(2, table.liveEntries());
+            // The replaced record stays in the data region as dead bytes until compaction
+            assertEquals(table.dataBytesUsed() - usedBeforeOverwrite, table.deadBytes());
+        }
+    }
+
+    @Test
+    void removeDropsTheEntry() throws IOException {
+        try (MappedLinkTable table = open(64, 1 << 16, 0.7)) {
+            table.put("abc", link("https://example.com/1", "abc"), VALID, true);
+            table.remove("abc");
+            table.remove("never-added");
+
+            assertNull(table.get("abc", NOW));
+            assertEquals(0, table.liveEntries());
+            assertEquals(table.dataBytesUsed(), table.deadBytes());
+        }
+    }
+
+    @Test
+    void removedSlotIsReusedWhenEveryOtherSlotIsTaken() throws IOException {
+        try (MappedLinkTable table = open(4, 1 << 16, 1.0)) {
+            for (String code : new String[]{"a", "b", "c", "d"}) {
+                assertTrue(table.put(code, link("https://example.com/" + code, code), VALID, true));
+            }
+            assertFalse(table.put("e", link("https://example.com/e", "e"), VALID, true));
+
+            table.remove("b");
+            assertTrue(table.put("e", link("https://example.com/e", "e"), VALID, true));
+            assertEquals("https://example.com/e", table.get("e", NOW).getLongUrl());
+            for (String code : new String[]{"a", "c", "d"}) {
+                assertEquals("https://example.com/" + code, table.get(code, NOW).getLongUrl());
+            }
+            assertEquals(4, table.liveEntries());
+        }
+    }
+
+    @Test
+    void putIsRefusedWhenTheTableIsFull() throws IOException {
+        // Load factor limit: two of four slots
+        try (MappedLinkTable table = open(4, 1 << 16, 0.5)) {
+            assertTrue(table.put("a", link("https://example.com/a", "a"), VALID, true));
+            assertTrue(table.put("b", link("https://example.com/b", "b"), VALID, true));
+            assertFalse(table.put("c", link("https://example.com/c", "c"), VALID, true));
+            assertNull(table.get("c", NOW));
+        }
+        // Data region too small for the record
+        try (MappedLinkTable table = MappedLinkTable.open(dir.resolve("small.bin"), 4, 32, 1.0)) {
+            assertFalse(table.put("a", link("https://example.com/a-long-path", "a"), VALID, true));
+            assertNull(table.get("a", NOW));
+            assertEquals(0, table.dataBytesUsed());
+        }
+    }
+
+    @Test
+    void entriesPastTheirValidUntilTimeAreMisses() throws IOException {
+        try (MappedLinkTable table = open(64, 1 << 16, 0.7)) {
+            table.put("abc", link("https://example.com/1", "abc"), VALID, true);
+
+            assertEquals("https://example.com/1", table.get("abc", VALID).getLongUrl());
+            assertNull(table.get("abc", VALID + 1));
+        }
+    }
+
+    @Test
+    void compactionKeepsOnlyLiveValidEntries() throws IOException {
+        try (MappedLinkTable table = open(64, 1 << 16, 0.7)) {
+            table.put("kept", link("https://example.com/old", "kept"), VALID, true);
+            table.put("kept", link("https://example.com/new", "origin"), VALID, true);
+            table.put("removed", link("https://example.com/removed", "removed"), VALID, true);
+            table.remove("removed");
+            table.put("stale", link("https://example.com/stale", "stale"), NOW - 1, true);
+
+            table.compact(NOW);
+
+            assertEquals(1, table.liveEntries());
+            assertEquals(0, table.deadBytes());
+            HotLink kept = table.get("kept", NOW);
+            assertEquals("https://example.com/new", kept.getLongUrl());
+            assertEquals("origin", kept.getAnalyticsKey());
+            assertNull(table.get("removed", NOW));
+            assertNull(table.get("stale", NOW - 2));
+
+            // The compacted table still takes writes
+            assertTrue(table.put("after", link("https://example.com/after", "after"), VALID, true));
+            assertEquals("https://example.com/after", table.get("after", NOW).getLongUrl());
+        }
+    }
+
+    @Test
+    void cleanlyClosedTableIsReopenedWithItsEntries() throws IOException {
+        try (MappedLinkTable table = open(64, 1 << 16, 0.7)) {
+            table.put("abc", link("https://example.com/1", "abc"), VALID, true);
+            table.put("gone", link("https://example.com/2", "gone"), VALID, true);
+            table.remove("gone");
+        }
+
+        try (MappedLinkTable reopened = open(64, 1 << 16, 0.7)) {
+            assertEquals("https://example.com/1", reopened.get("abc", NOW).getLongUrl());
+            assertNull(reopened.get("gone", NOW));
+            assertEquals(1, reopened.liveEntries());
+        }
+    }
+
+    @Test
+    void tableLeftOpenByACrashIsDiscarded() throws IOException {
+        MappedLinkTable crashed = open(64, 1 << 16, 0.7);
+        crashed.put("abc", link("https://example.com/1", "abc"), VALID, true);
+        // No close(): the file is still marked as in use
+
+        try (MappedLinkTable reopened = open(64, 1 << 16, 0.7)) {
+            assertNull(reopened.get("abc", NOW));
+            assertEquals(0, reopened.liveEntries());
+            assertEquals(0, reopened.dataBytesUsed());
+        }
+    }
+
+    @Test
+    void tableWithOtherGeometryIsDiscarded() throws IOException {
+        try (MappedLinkTable table = open(64, 1 << 16, 0.7)) {
+            table.put("abc", link("https://example.com/1", "abc"), VALID, true);
+        }
+
+        try (MappedLinkTable reopened = open(128, 1 << 16, 0.7)) {
+            assertNull(reopened.get("abc", NOW));
+            assertEquals(0, reopened.liveEntries());
+        }
+    }
+
+    private MappedLinkTable open(int slots, long dataBytes, double maxLoadFactor) throws IOException {
+        return MappedLinkTable.open(dir.resolve("hot-links.bin"), slots, dataBytes, maxLoadFactor);
+    }
+
+    private static HotLink link(String longUrl, String analyticsKey) {
+        return new HotLink(longUrl, Long.MAX_VALUE, false, analyticsKey);
+    }
+}
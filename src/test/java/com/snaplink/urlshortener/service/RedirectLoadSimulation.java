@@ -0,0 +1,112 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.repository.InMemoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load test of the redirect lookup path against a storage stand-in with a fixed latency.
+ * A fixed thread pool plays the servlet container's workers, and every request misses the
+ * heap cache. The blocking path holds a worker for each storage read, so its throughput
+ * tops out at workers / latency. The async path hands the worker back as soon as the read
+ * is issued, so the number of reads in flight is no longer bounded by the pool.
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.snaplink.urlshortener.service.RedirectLoadSimulation}.
+ */
+public class RedirectLoadSimulation {
+
+    private static final int WORKERS = 50;
+    private static final long LATENCY_MILLIS = 20;
+    private static final int REQUESTS = 20_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        ScheduledExecutorService storageIo = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "slow-storage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        SlowStore store = new SlowStore(storageIo);
+        for (int i = 0; i < 2 * REQUESTS; i++) {
+            String code = "c" + i;
+            store.createShortUrl(new ShortUrl(code, "https://example.com/" + i, "user",
+                    "2024-01-01T00:00:00Z", null, false, true, code));
+        }
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ShortUrlCache cache = new ShortUrlCache(64L << 20, 60, 10, registry);
+        ShortCodeGenerator generator = new LeasedRangeShortCodeGenerator(store, 1000, 7, 60_000);
+        ShortCodeFilter filter = new ShortCodeFilter(store, generator, registry, false, 0.01, 1L << 20, 60_000, 1_000, 60_000);
+        // Collaborators that the lookup path never touches are left out
+        UrlShortenerService service = new UrlShortenerService(store, store, cache, null, null, filter, null, null);
+
+        System.out.printf("%d workers, %d ms storage latency, %d requests; blocking ceiling %.0f req/s%n",
+                WORKERS, LATENCY_MILLIS, REQUESTS, WORKERS * 1000.0 / LATENCY_MILLIS);
+        run("blocking", 0, (code, done) -> {
+            service.getShortUrl(code);
+            done.run();
+        });
+        run("async", REQUESTS, (code, done) -> service.getShortUrlAsync(code).whenComplete((url, error) -> done.run()));
+    }
+
+    private interface Handler {
+        void handle(String shortCode, Runnable done);
+    }
+
+    private static void run(String name, int firstCode, Handler handler) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(WORKERS);
+        CountDownLatch finished = new CountDownLatch(REQUESTS);
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peakInFlight = new AtomicInteger();
+
+        long started = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            String code = "c" + (firstCode + i);
+            workers.execute(() -> {
+                peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                handler.handle(code, () -> {
+                    inFlight.decrementAndGet();
+                    finished.countDown();
+                });
+            });
+        }
+        finished.await();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        workers.shutdown();
+
+        System.out.printf("%-8s %8.0f req/s, peak %d requests in flight%n", name, REQUESTS / seconds, peakInFlight.get());
+    }
+
+    // Answers from memory after a fixed delay; async reads complete on a single I/O thread
+    private static final class SlowStore extends InMemoryRepository {
+        private final ScheduledExecutorService io;
+
+        SlowStore(ScheduledExecutorService io) {
+            this.io = io;
+        }
+
+        @Override
+        public ShortUrl getShortUrlForRedirect(String shortCode) {
+            try {
+                Thread.sleep(LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return getShortUrl(shortCode);
+        }
+
+        @Override
+        public CompletableFuture<ShortUrl> getShortUrlForRedirectAsync(String shortCode) {
+            CompletableFuture<ShortUrl> result = new CompletableFuture<>();
+            io.schedule(() -> result.complete(getShortUrl(shortCode)), LATENCY_MILLIS, TimeUnit.MILLISECONDS);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.snaplink.urlshortener.service;
+
+import com.snaplink.urlshortener.model.ShortUrl;
+import com.snaplink.urlshortener.repository.InMemoryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShortCodeFilterTest {
+
+    private static final int MIN_LENGTH = 7;
+
+    @Test
+    void codesCreatedElsewhereAfterTheScanAreNeverDefiniteMisses() {
+        InMemoryRepository store = new InMemoryRepository();
+        ShortCodeGenerator local = new LeasedRangeShortCodeGenerator(store, 10, MIN_LENGTH, 60_000);
+        for (int i = 0; i < 5; i++) {
+            create(store, local.nextCode());
+        }
+        ShortCodeFilter filter = filter(store, local, 1_000);
+        filter.refresh();
+        filter.pollAnnouncements();
+
+        // Another instance leases a new block and creates a link and an alias the filter never saw
+        ShortCodeGenerator remote = new LeasedRangeShortCodeGenerator(store, 10, MIN_LENGTH, 60_000);
+        ShortCodeFilter remoteFilter = filter(store, remote, 1_000);
+        String remoteCode = remote.nextCode();
+        create(store, remoteCode);
+        remoteFilter.announce(List.of("spring-sale"));
+        create(store, "spring-sale");
+        filter.pollAnnouncements();
+
+        assertTrue(filter.mightExist(remoteCode));
+        assertTrue(filter.mightExist("spring-sale"));
+        // Never handed out, from a block leased before the scan
+        assertFalse(filter.mightExist(code(7)));
+    }
+
+    @Test
+    void randomNonGeneratorMissesSkipTheStore() {
+        InMemoryRepository store = new InMemoryRepository();
+        ShortCodeGenerator generator = new LeasedRangeShortCodeGenerator(store, 10, MIN_LENGTH, 60_000);
+        create(store, "spring-sale");
+        ShortCodeFilter filter = filter(store, generator, 1_000);
+        filter.refresh();
+        filter.pollAnnouncements();
+
+        Random random = new Random(42);
+        String alphabet = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_.";
+        int nonGenerator = 0;
+        int definiteMisses = 0;
+        for (int i = 0; i < 1_000; i++) {
+            StringBuilder code = new StringBuilder(random.nextBoolean() ? "wp-" : "");
+            for (int length = 1 + random.nextInt(16); code.length() < length; ) {
+                code.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            if (generator.idOf(code.toString()) >= 0) continue;
+            nonGenerator++;
+            if (!filter.mightExist(code.toString())) definiteMisses++;
+        }
+        // Bloom false positives are the only non-generator codes that still go to storage
+        assertTrue(definiteMisses >= nonGenerator * 0.95, definiteMisses + " of " + nonGenerator);
+        assertFalse(filter.mightExist("wp-login.php"));
+        assertTrue(filter.mightExist("spring-sale"));
+    }
+
+    @Test
+    void nonGeneratorMissesGoToStorageWhilePollsLag() throws InterruptedException {
+        InMemoryRepository store = new InMemoryRepository();
+        ShortCodeGenerator generator = new LeasedRangeShortCodeGenerator(store, 10, MIN_LENGTH, 60_000);
+        ShortCodeFilter filter = filter(store, generator, 1);
+        filter.refresh();
+        assertTrue(filter.mightExist("wp-login.php"));
+
+        filter.pollAnnouncements();
+        Thread.sleep(10);
+        // An alias announced since the last poll could exist
+        assertTrue(filter.mightExist("wp-login.php"));
+    }
+
+    @Test
+    void aliasesInsideTheLeasedIdSpaceAreReserved() {
+        AtomicInteger sequenceReads = new AtomicInteger();
+        InMemoryRepository store = new InMemoryRepository() {
+            @Override
+            public long peekSequence() {
+                sequenceReads.incrementAndGet();
+                return super.peekSequence();
+            }
+        };
+        ShortCodeGenerator generator = new LeasedRangeShortCodeGenerator(store, 10, MIN_LENGTH, 60_000);
+        generator.nextCode();
+        ShortCodeFilter filter = new ShortCodeFilter(store, generator, new SimpleMeterRegistry(),
+                true, 0.01, 1 << 16, 60_000, 1_000, 60_000);
+
+        assertTrue(filter.isReservedForGeneratedCodes(code(9)));
+        assertFalse(filter.isReservedForGeneratedCodes(code(10)));
+        assertFalse(filter.isReservedForGeneratedCodes("spring-sale"));
+        assertFalse(filter.isReservedForGeneratedCodes("abc"));
+        // The sequence is read once per lease age, not per alias
+        assertEquals(1, sequenceReads.get());
+    }
+
+    // A lease age of zero makes every sequence sample usable at once
+    private static ShortCodeFilter filter(InMemoryRepository store, ShortCodeGenerator generator, long pollIntervalMillis) {
+        return new ShortCodeFilter(store, generator, new SimpleMeterRegistry(),
+                true, 0.01, 1 << 16, 60_000, pollIntervalMillis, 0);
+    }
+
+    private static String code(long id) {
+        return Base62.encode(Base62.minValueForLength(MIN_LENGTH) + id);
+    }
+
+    private static void create(InMemoryRepository store, String code) {
+        store.createShortUrl(new ShortUrl(code, "https://example.com/" + code, "user",
+                "2024-01-01T00:00:00Z", null, false, true, code));
+    }
+}